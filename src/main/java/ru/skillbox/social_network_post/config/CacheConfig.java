@@ -1,34 +1,49 @@
 package ru.skillbox.social_network_post.config;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.lang.NonNull;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(CacheSpecProperties.class)
 public class CacheConfig {
 
+    public static final String POSTS_CACHE = "posts";       // Кэш постов по ID
+    public static final String COMMENTS_CACHE = "comments"; // Кэш первой страницы комментариев поста
+
+    private static final List<String> CACHE_NAMES = List.of(POSTS_CACHE, COMMENTS_CACHE);
+
+
     @Bean
-    public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager(
-                "posts",        // Кэш постов по ID
-                "post_pages",    // Кэш страниц с постами
-                "comments"     // Кэш комментариев
-
-        ) {
-            @Override
-            protected @NonNull org.springframework.cache.concurrent.ConcurrentMapCache createConcurrentMapCache(@NonNull String name) {
-                return new org.springframework.cache.concurrent.ConcurrentMapCache(
-                        name,
-                        new ConcurrentHashMap<>(500), // Ограничение в 500 записей
-                        false // Без сериализации
-                );
-            }
-        };
+    public CacheManager cacheManager(CacheSpecProperties cacheSpecProperties) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+
+        // Кэши регистрируем заранее, чтобы метрики привязались к ним при старте
+        CACHE_NAMES.forEach(name -> cacheManager.registerCustomCache(name, buildCache(cacheSpecProperties.getSpec(name))));
+
+        // Кэши, созданные на лету, тоже ограничены по размеру и времени жизни
+        cacheManager.setCaffeine(caffeine(cacheSpecProperties.getDefaults()));
+
+        return cacheManager;
+    }
+
+
+    private static com.github.benmanes.caffeine.cache.Cache<Object, Object> buildCache(CacheSpecProperties.Spec spec) {
+        return caffeine(spec).build();
+    }
+
+
+    private static Caffeine<Object, Object> caffeine(CacheSpecProperties.Spec spec) {
+        return Caffeine.newBuilder()
+                .maximumSize(spec.getMaximumSize())
+                .expireAfterWrite(spec.getExpireAfterWrite())
+                .recordStats(); // hit/miss/eviction для Micrometer (cache_gets, cache_evictions)
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+package ru.skillbox.social_network_post.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Параметры кэшей: размер и время жизни записей для каждого кэша отдельно.
+ * Кэш, не описанный в specs, получает настройки по умолчанию.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "cache")
+public class CacheSpecProperties {
+
+    private Spec defaults = new Spec();
+
+    private Map<String, Spec> specs = new HashMap<>();
+
+
+    public Spec getSpec(String cacheName) {
+        return specs.getOrDefault(cacheName, defaults);
+    }
+
+
+    @Getter
+    @Setter
+    public static class Spec {
+
+        // Максимальное число записей, при превышении вытесняются редко используемые (W-TinyLFU)
+        private long maximumSize = 500;
+
+        // Время жизни записи с момента записи в кэш
+        private Duration expireAfterWrite = Duration.ofMinutes(5);
+    }
+}
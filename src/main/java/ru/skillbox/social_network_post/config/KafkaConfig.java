@@ -1,48 +1,141 @@
 package ru.skillbox.social_network_post.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.admin.NewTopic;
 import org.apache.kafka.clients.producer.ProducerConfig;
-import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.*;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
 import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.kafka.support.converter.StringJsonMessageConverter;
 import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
 import org.springframework.util.backoff.FixedBackOff;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
 @Configuration
 public class KafkaConfig {
 
+    public static final String RETRY_TOPIC_SUFFIX = "-retry";
+    public static final String DLT_SUFFIX = "-dlt";
+
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
     @Value("${spring.kafka.consumer.group-id}")
     private String groupId;
 
+    // THROUGHPUT включает пакетирование и сжатие ниже, DEFAULT оставляет их значения клиента Kafka
+    @Value("${kafka-producer.mode:throughput}")
+    private KafkaProducerMode mode;
+
+    // Пакетирование: продюсер ждет до linger-ms, набирая пачку до batch-size байт на партицию
+    @Value("${kafka-producer.linger-ms:20}")
+    private int lingerMs;
+
+    @Value("${kafka-producer.batch-size:65536}")
+    private int batchSize;
+
+    // none | gzip | snappy | lz4 | zstd
+    @Value("${kafka-producer.compression-type:lz4}")
+    private String compressionType;
+
+    // Идемпотентность (без дублей и перестановок при ретраях продюсера) включается только при acks=all:
+    // с acks=0 или 1 клиент Kafka отказывается стартовать с enable.idempotence=true
+    @Value("${kafka-producer.acks:all}")
+    private String acks;
+
+    // Ограничения продюсера по времени: future отправки гарантированно завершается за max-block + delivery-timeout,
+    // сумма должна быть меньше outbox.send-timeout (проверяет OutboxRelayService)
+    @Value("${kafka-producer.max-block:2s}")
+    private Duration maxBlock;
+
+    @Value("${kafka-producer.delivery-timeout:5s}")
+    private Duration deliveryTimeout;
+
+    // Не больше delivery-timeout - linger-ms (требование клиента Kafka)
+    @Value("${kafka-producer.request-timeout:4s}")
+    private Duration requestTimeout;
+
+    // Сколько событий аккаунтов схлопывается в один batch-вызов слушателя
+    @Value("${kafka-consumer.max-poll-records:500}")
+    private int maxPollRecords;
+
+    // Число потоков-консьюмеров на топик; имеет смысл держать равным числу партиций
+    @Value("${kafka-consumer.concurrency:3}")
+    private int concurrency;
+
+    @Value("${kafka-consumer.retry-attempts:3}")
+    private int retryAttempts;
+
+    @Value("${kafka-consumer.retry-initial-interval:1s}")
+    private Duration retryInitialInterval;
+
+    @Value("${kafka-consumer.topic-partitions:3}")
+    private int topicPartitions;
+
+    @Value("${kafka-consumer.topic-replicas:1}")
+    private int topicReplicas;
+
+    @Value("${spring.kafka.blocked-account-topic}")
+    private String blockedAccountTopic;
+
+    @Value("${spring.kafka.deleted-account-topic}")
+    private String deletedAccountTopic;
+
+    private final MeterRegistry meterRegistry;
+
+    public KafkaConfig(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @Bean
     public Map<String, Object> producerConfigs() {
         Map<String, Object> props = new HashMap<>();
         props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, LongSerializer.class);
+        // Ключ — id поста строкой: все события одного поста попадают в одну партицию и читаются по порядку.
+        // Формат ключа на проводе изменился (раньше LongSerializer, ключ не передавался), консьюмеры
+        // топиков постов, комментариев и лайков должны читать ключ StringDeserializer-ом
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
         props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+
+        if (mode == KafkaProducerMode.THROUGHPUT) {
+            props.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+            props.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+            props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        }
+
+        props.put(ProducerConfig.ACKS_CONFIG, acks);
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "all".equals(acks) || "-1".equals(acks));
+        props.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, (int) maxBlock.toMillis());
+        props.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, (int) deliveryTimeout.toMillis());
+        props.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, (int) requestTimeout.toMillis());
         return props;
     }
 
     @Bean
-    public ProducerFactory<Long, Object> producerFactory() {
-        return new DefaultKafkaProducerFactory<>(producerConfigs());
+    public ProducerFactory<String, Object> producerFactory() {
+        DefaultKafkaProducerFactory<String, Object> factory = new DefaultKafkaProducerFactory<>(producerConfigs());
+        // Метрики продюсера (request-latency, batch-size, record-send-rate и т.д.) в Micrometer
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return factory;
     }
 
     @Bean
-    public KafkaTemplate<Long, Object> kafkaTemplate() {
-        KafkaTemplate<Long, Object> template = new KafkaTemplate<>(producerFactory());
+    public KafkaTemplate<String, Object> kafkaTemplate() {
+        KafkaTemplate<String, Object> template = new KafkaTemplate<>(producerFactory());
         template.setMessageConverter(new StringJsonMessageConverter());
         return template;
     }
@@ -55,26 +148,91 @@ public class KafkaConfig {
         props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
-        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, true);
+        // Оффсеты коммитит контейнер после обработки, а не фоновый auto-commit клиента
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
         return props;
     }
 
+    // Метрики консьюмера, в том числе отставание (records-lag-max) по каждому клиенту
+    @Bean
+    public ConsumerFactory<String, String> consumerFactory() {
+        DefaultKafkaConsumerFactory<String, String> factory = new DefaultKafkaConsumerFactory<>(consumerConfigs());
+        factory.addListener(new MicrometerConsumerListener<>(meterRegistry));
+        return factory;
+    }
+
+    // Отдельный шаблон для retry/DLT: сообщение пересылается как есть, без повторной JSON-сериализации
+    @Bean
+    public KafkaTemplate<String, String> retryKafkaTemplate() {
+        Map<String, Object> props = new HashMap<>(producerConfigs());
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(props));
+    }
+
+    // Основной топик: ошибку не ретраим на месте, а сразу перекладываем запись в <topic>-retry, чтобы не блокировать партицию
     @Bean
     public DefaultErrorHandler errorHandler() {
-        return new DefaultErrorHandler(new FixedBackOff(1000L, 3)); // 3 попытки с интервалом 1 сек
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(retryKafkaTemplate(),
+                (consumerRecord, e) -> new TopicPartition(consumerRecord.topic() + RETRY_TOPIC_SUFFIX, -1));
+        return new DefaultErrorHandler(recoverer, new FixedBackOff(0L, 0L));
     }
 
+    // Retry-топик: несколько попыток с экспоненциальной паузой, затем запись уходит в <topic>-dlt
     @Bean
-    public ConsumerFactory<String, String> consumerFactory() {
-        return new DefaultKafkaConsumerFactory<>(consumerConfigs());
+    public DefaultErrorHandler retryErrorHandler() {
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(retryKafkaTemplate(),
+                (consumerRecord, e) -> new TopicPartition(toDltTopic(consumerRecord.topic()), -1));
+
+        ExponentialBackOffWithMaxRetries backOff = new ExponentialBackOffWithMaxRetries(retryAttempts);
+        backOff.setInitialInterval(retryInitialInterval.toMillis());
+        backOff.setMultiplier(2.0);
+
+        return new DefaultErrorHandler(recoverer, backOff);
     }
 
+    // Одиночные записи (retry-топики)
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, String> kafkaListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, String> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(concurrency);
+        factory.setCommonErrorHandler(retryErrorHandler());
+        return factory;
+    }
+
+    // Batch-слушатель: весь poll обрабатывается одной транзакцией, оффсеты подтверждаются вручную после нее
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> batchKafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(concurrency);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
         factory.setCommonErrorHandler(errorHandler());
         return factory;
     }
-}
\ No newline at end of file
+
+    // Retry- и DLT-топики принадлежат сервису, поэтому создаем их сами
+    @Bean
+    public KafkaAdmin.NewTopics accountEventRetryTopics() {
+        return new KafkaAdmin.NewTopics(
+                ownedTopic(blockedAccountTopic + RETRY_TOPIC_SUFFIX),
+                ownedTopic(blockedAccountTopic + DLT_SUFFIX),
+                ownedTopic(deletedAccountTopic + RETRY_TOPIC_SUFFIX),
+                ownedTopic(deletedAccountTopic + DLT_SUFFIX));
+    }
+
+    private NewTopic ownedTopic(String name) {
+        return TopicBuilder.name(name)
+                .partitions(topicPartitions)
+                .replicas(topicReplicas)
+                .build();
+    }
+
+    private static String toDltTopic(String retryTopic) {
+        return retryTopic.substring(0, retryTopic.length() - RETRY_TOPIC_SUFFIX.length()) + DLT_SUFFIX;
+    }
+}
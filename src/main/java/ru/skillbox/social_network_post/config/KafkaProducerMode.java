@@ -0,0 +1,11 @@
+package ru.skillbox.social_network_post.config;
+
+// Режим продюсера Kafka (kafka-producer.mode)
+public enum KafkaProducerMode {
+
+    // Значения linger.ms, batch.size и compression.type клиента Kafka
+    DEFAULT,
+
+    // Пакетирование и сжатие по настройкам kafka-producer
+    THROUGHPUT
+}
@@ -0,0 +1,18 @@
+package ru.skillbox.social_network_post.config;
+
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+@Configuration
+public class SchedulingConfig {
+
+    // Пул планировщика вместо SimpleAsyncTaskScheduler, который Boot создает при включенных виртуальных потоках:
+    // у того задачи fixedDelay выполняются на единственном потоке планировщика и ждут друг друга.
+    // Размер (spring.task.scheduling.pool.size) — по числу одновременно работающих циклов @Scheduled
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+}
@@ -15,7 +15,10 @@ import ru.skillbox.social_network_post.service.CommentService;
 import ru.skillbox.social_network_post.service.ReactionService;
 import ru.skillbox.social_network_post.dto.CommentDto;
 import ru.skillbox.social_network_post.dto.PageCommentDto;
+import ru.skillbox.social_network_post.dto.SliceCommentDto;
 
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Slf4j
@@ -43,6 +46,19 @@ public class CommentController {
     }
 
 
+    @LogMethodCall
+    @LogExecutionTime
+    @GetMapping("/slice")
+    public SliceCommentDto getSliceByPostId(
+            @PathVariable UUID id,
+            @Valid @ModelAttribute CommentSearchDto commentSearchDto,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        return commentService.getSliceByPostId(id, commentSearchDto, cursor, size);
+    }
+
+
     @LogMethodCall
     @LogExecutionTime
     @PostMapping
@@ -97,4 +113,38 @@ public class CommentController {
             @PageableDefault(sort = "id", direction = Sort.Direction.ASC) Pageable pageable) {
         return commentService.getSubcomments(id, commentId, pageable);
     }
-}
\ No newline at end of file
+
+
+    @LogMethodCall
+    @LogExecutionTime
+    @GetMapping("/{commentId}/subcomment/slice")
+    public SliceCommentDto getSubcommentsSlice(
+            @PathVariable UUID id,
+            @PathVariable UUID commentId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return commentService.getSubcommentsSlice(id, commentId, cursor, size);
+    }
+
+
+    @LogMethodCall
+    @LogExecutionTime
+    @GetMapping("/{commentId}/thread")
+    public List<CommentDto> getThread(
+            @PathVariable UUID id,
+            @PathVariable UUID commentId,
+            @RequestParam(defaultValue = "50") int size) {
+        return commentService.getThread(id, commentId, size);
+    }
+
+
+    @LogMethodCall
+    @LogExecutionTime
+    @GetMapping("/top-replies")
+    public Map<UUID, List<CommentDto>> getTopReplies(
+            @PathVariable UUID id,
+            @RequestParam List<UUID> commentIds,
+            @RequestParam(defaultValue = "3") int limit) {
+        return commentService.getTopReplies(id, commentIds, limit);
+    }
+}
@@ -60,6 +60,18 @@ public class PostController {
     }
 
 
+    @LogMethodCall
+    @LogExecutionTime
+    @GetMapping("/feed")
+    public SlicePostDto getFeed(
+            @Valid @ModelAttribute PostSearchDto postSearchDto,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        return postService.getFeed(postSearchDto, cursor, size);
+    }
+
+
     @LogMethodCall
     @LogExecutionTime
     @PostMapping
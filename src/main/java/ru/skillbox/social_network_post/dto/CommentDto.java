@@ -12,7 +12,7 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @EqualsAndHashCode
-@Builder
+@Builder(toBuilder = true)
 public class CommentDto {
 
     private UUID id;
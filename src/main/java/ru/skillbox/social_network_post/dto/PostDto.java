@@ -12,7 +12,7 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @EqualsAndHashCode
-@Builder
+@Builder(toBuilder = true)
 public class PostDto {
 
     private UUID id;
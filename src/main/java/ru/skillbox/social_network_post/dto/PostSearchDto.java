@@ -31,6 +31,10 @@ public class PostSearchDto {
 
     private String postText;
 
+    // Полнотекстовый поиск по заголовку и тексту (синтаксис websearch_to_tsquery), выдача по релевантности
+    @Size(max = 255, message = "Search query must not exceed 255 characters")
+    private String query;
+
     private Boolean withFriends;
 
     private Boolean isDeleted;
@@ -0,0 +1,27 @@
+package ru.skillbox.social_network_post.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.util.List;
+
+// Страница ленты без подсчета общего количества: следующая страница запрашивается по nextCursor
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SlicePostDto {
+
+    private List<PostDto> content;
+
+    @NotNull
+    @Min(1)
+    private Integer size;
+
+    @NotNull
+    private Boolean hasNext;
+
+    private String nextCursor;
+}
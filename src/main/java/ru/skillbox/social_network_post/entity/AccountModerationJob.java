@@ -0,0 +1,44 @@
+package ru.skillbox.social_network_post.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "account_moderation_jobs")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Builder
+public class AccountModerationJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    private UUID accountId;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private ModerationAction action;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Builder.Default
+    private ModerationStage stage = ModerationStage.COMMENTS;
+
+    // Сколько строк (комментариев и реакций) уже обработано
+    @NotNull
+    @Builder.Default
+    private Long processedRows = 0L;
+
+    @NotNull
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+}
@@ -16,6 +16,11 @@ import java.util.UUID;
 @Builder
 public class Comment {
 
+    public static final String ROOT_PATH = "/";
+
+    // Предел вложенности: каждый уровень удлиняет threadPath на 37 байт, а строка индекса B-tree ограничена ~2.7 КБ
+    public static final int MAX_DEPTH = 50;
+
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     private UUID id;
@@ -49,11 +54,20 @@ public class Comment {
     @Enumerated(EnumType.STRING)
     private CommentType commentType;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "parent_id")
     private Comment parentComment;
 
-    @ManyToOne
+    // Материализованный путь: id предков через "/" (у комментария первого уровня — "/").
+    // Поддерево комментария — все строки с префиксом threadPath + id + "/"
+    @Column(columnDefinition = "TEXT")
+    @Builder.Default
+    private String threadPath = ROOT_PATH;
+
+    @Builder.Default
+    private Integer depth = 0;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "post_id", nullable = false)
     private Post post;
 }
@@ -0,0 +1,31 @@
+package ru.skillbox.social_network_post.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.Instant;
+
+@Entity
+@Table(name = "job_locks")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Builder
+public class JobLock {
+
+    // Имя фоновой задачи
+    @Id
+    private String name;
+
+    @NotNull
+    private Instant lockedUntil;
+
+    @NotNull
+    private Instant lockedAt;
+
+    // Экземпляр сервиса, владеющий блокировкой
+    @NotNull
+    private String lockedBy;
+}
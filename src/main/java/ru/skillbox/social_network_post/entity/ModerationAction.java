@@ -0,0 +1,6 @@
+package ru.skillbox.social_network_post.entity;
+
+public enum ModerationAction {
+    BLOCK,
+    DELETE
+}
@@ -0,0 +1,9 @@
+package ru.skillbox.social_network_post.entity;
+
+// Этапы задачи модерации аккаунта, выполняются по порядку
+public enum ModerationStage {
+    COMMENTS,
+    // Удаление реакций или исключение их из счетчиков
+    REACTIONS,
+    DONE
+}
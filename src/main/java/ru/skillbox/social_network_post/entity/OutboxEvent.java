@@ -0,0 +1,40 @@
+package ru.skillbox.social_network_post.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "outbox_events")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Builder
+public class OutboxEvent {
+
+    // Монотонный id задает порядок отправки событий
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    private String topic;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private OutboxEventType eventType;
+
+    // id поста, к которому относится событие
+    private UUID aggregateId;
+
+    @NotNull
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+    @NotNull
+    private LocalDateTime createdAt;
+}
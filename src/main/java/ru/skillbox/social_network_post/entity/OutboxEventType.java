@@ -0,0 +1,18 @@
+package ru.skillbox.social_network_post.entity;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import ru.skillbox.social_network_post.dto.CommentNotificationDto;
+import ru.skillbox.social_network_post.dto.PostNotificationDto;
+import ru.skillbox.social_network_post.dto.ReactionNotificationDto;
+
+// Тип события в outbox определяет класс, в который десериализуется payload перед отправкой
+@Getter
+@RequiredArgsConstructor
+public enum OutboxEventType {
+    NEW_POST(PostNotificationDto.class),
+    NEW_COMMENT(CommentNotificationDto.class),
+    NEW_LIKE(ReactionNotificationDto.class);
+
+    private final Class<?> payloadClass;
+}
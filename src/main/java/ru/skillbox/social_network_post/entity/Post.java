@@ -64,7 +64,8 @@ public class Post {
     @Builder.Default
     private List<Reaction> reactionType = new ArrayList<>();
 
-    @ElementCollection(fetch = FetchType.EAGER)
+    // Для списков теги загружаются отдельным запросом на всю страницу (PostRepository.findTagsByPostIds)
+    @ElementCollection
     @CollectionTable(name = "post_tags", joinColumns = @JoinColumn(name = "post_id"))
     @Column(name = "tag")
     private List<String> tags;
@@ -0,0 +1,27 @@
+package ru.skillbox.social_network_post.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.util.UUID;
+
+@Entity
+@Table(name = "post_reaction_counts")
+@IdClass(PostReactionCountId.class)
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Builder
+public class PostReactionCount {
+
+    @Id
+    private UUID postId;
+
+    @Id
+    private String reactionType;
+
+    @NotNull
+    private Long count;
+}
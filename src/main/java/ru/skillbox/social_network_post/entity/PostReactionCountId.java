@@ -0,0 +1,18 @@
+package ru.skillbox.social_network_post.entity;
+
+import lombok.*;
+
+import java.io.Serializable;
+import java.util.UUID;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@EqualsAndHashCode
+public class PostReactionCountId implements Serializable {
+
+    private UUID postId;
+
+    private String reactionType;
+}
@@ -0,0 +1,29 @@
+package ru.skillbox.social_network_post.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.Immutable;
+
+import java.util.UUID;
+
+// Только для чтения: search_vector таблицы posts, вычисляется Postgres (db-changelog-10).
+// Отдельная сущность, чтобы tsvector не загружался вместе с каждым Post
+@Entity
+@Immutable
+@Table(name = "posts")
+@NoArgsConstructor
+@Getter
+public class PostSearchVector {
+
+    @Id
+    private UUID id;
+
+    @Column(name = "search_vector", insertable = false, updatable = false, columnDefinition = """
+            tsvector GENERATED ALWAYS AS (
+                setweight(to_tsvector('russian', coalesce(title, '')), 'A') ||
+                setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+                setweight(to_tsvector('russian', coalesce(post_text, '')), 'B') ||
+                setweight(to_tsvector('english', coalesce(post_text, '')), 'B')
+            ) STORED""")
+    private String searchVector;
+}
@@ -3,6 +3,7 @@ package ru.skillbox.social_network_post.entity;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.LocalDateTime;
@@ -35,7 +36,12 @@ public class Reaction {
     @CreationTimestamp
     private LocalDateTime createdAt;
 
-    @ManyToOne
+    // Реакция заблокированного аккаунта: хранится, но не учитывается в счетчиках
+    @Builder.Default
+    @ColumnDefault("false")
+    private Boolean isBlocked = false;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "post_id", nullable = false)
     private Post post;
 }
\ No newline at end of file
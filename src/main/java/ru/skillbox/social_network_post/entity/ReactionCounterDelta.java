@@ -0,0 +1,34 @@
+package ru.skillbox.social_network_post.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+
+import java.util.UUID;
+
+@Entity
+@Table(name = "reaction_counter_deltas")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Builder
+public class ReactionCounterDelta {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Заполнен ровно один из id: приращение reactions_count поста или like_amount комментария
+    private UUID postId;
+
+    private UUID commentId;
+
+    // Тип реакции поста: дельта входит и в reactions_count, и в гистограмму post_reaction_counts
+    @Size(max = 50)
+    private String reactionType;
+
+    @NotNull
+    private Integer delta;
+}
@@ -8,6 +8,7 @@ import org.springframework.data.domain.Page;
 import ru.skillbox.social_network_post.entity.Comment;
 import ru.skillbox.social_network_post.dto.CommentDto;
 import ru.skillbox.social_network_post.dto.PageCommentDto;
+import ru.skillbox.social_network_post.repository.projection.CommentView;
 
 @UtilityClass
 public final class CommentMapperFactory {
@@ -35,17 +36,44 @@ public final class CommentMapperFactory {
         );
     }
 
-    public static PageCommentDto toPageCommentDto(Page<Comment> comments) {
-        if (comments == null) {
+    public static CommentDto toCommentDto(CommentView view) {
+        if (view == null) {
             return null;
         }
 
+        return new CommentDto(
+                view.id(),
+                view.commentType(),
+                view.time(),
+                view.timeChanged(),
+                view.authorId(),
+                view.parentId(),
+                view.commentText(),
+                view.postId(),
+                view.isBlocked(),
+                view.isDeleted(),
+                view.likeAmount(),
+                false,
+                view.commentsCount(),
+                view.imagePath()
+        );
+    }
+
+    public static PageCommentDto toPageCommentDto(Page<Comment> comments) {
+        return comments == null ? null : toPageCommentDto(comments, toCommentDtoList(comments.getContent()));
+    }
+
+    public static PageCommentDto toPageCommentDtoFromViews(Page<CommentView> views) {
+        return views == null ? null : toPageCommentDto(views, toCommentDtoListFromViews(views.getContent()));
+    }
+
+    private static PageCommentDto toPageCommentDto(Page<?> comments, List<CommentDto> content) {
         return new PageCommentDto(
                 comments.getTotalElements(),
                 comments.getTotalPages(),
                 comments.getNumber(),
                 comments.getSize(),
-                comments.hasContent() ? toCommentDtoList(comments.getContent()) : List.of(),
+                comments.hasContent() ? content : List.of(),
                 comments.getSort(),
                 comments.isFirst(),
                 comments.isLast(),
@@ -98,6 +126,10 @@ public final class CommentMapperFactory {
         return (comments == null) ? List.of() : comments.stream().map(CommentMapperFactory::toCommentDto).toList();
     }
 
+    public static List<CommentDto> toCommentDtoListFromViews(List<CommentView> views) {
+        return (views == null) ? List.of() : views.stream().map(CommentMapperFactory::toCommentDto).toList();
+    }
+
     private static UUID getParentCommentId(Comment comment) {
         return comment != null && comment.getParentComment() != null ? comment.getParentComment().getId() : null;
     }
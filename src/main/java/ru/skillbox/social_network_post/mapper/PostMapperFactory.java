@@ -6,8 +6,10 @@ import ru.skillbox.social_network_post.entity.Post;
 import ru.skillbox.social_network_post.dto.PagePostDto;
 import ru.skillbox.social_network_post.dto.PostDto;
 import ru.skillbox.social_network_post.dto.PostType;
+import ru.skillbox.social_network_post.repository.projection.PostTagView;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 public final class PostMapperFactory {
 
@@ -16,6 +18,11 @@ public final class PostMapperFactory {
     }
 
     public static PostDto toPostDto(Post post) {
+        return toPostDto(post, post != null ? post.getTags() : null);
+    }
+
+    // Теги передаются отдельно, чтобы не инициализировать ленивую коллекцию поста
+    public static PostDto toPostDto(Post post, List<String> tags) {
         if (post == null) {
             return null;
         }
@@ -31,8 +38,8 @@ public final class PostMapperFactory {
                 .isBlocked(post.getIsBlocked())
                 .isDeleted(post.getIsDeleted())
                 .commentsCount(post.getCommentsCount())
-                .tags(post.getTags() != null
-                        ? post.getTags().stream()
+                .tags(tags != null
+                        ? tags.stream()
                         .map(TagDto::new) // Преобразуем String в TagDto
                         .toList()
                         : Collections.emptyList()) // Если null → пустой список
@@ -42,7 +49,7 @@ public final class PostMapperFactory {
                 .build();
     }
 
-    public static PagePostDto toPagePostDto(Page<Post> posts) {
+    public static PagePostDto toPagePostDto(Page<Post> posts, Map<UUID, List<String>> tagsByPostId) {
         if (posts == null) {
             return null;
         }
@@ -52,7 +59,7 @@ public final class PostMapperFactory {
                 .totalPages(posts.getTotalPages())
                 .number(posts.getNumber())
                 .size(posts.getSize())
-                .content(posts.hasContent() ? toPostDtoList(posts.getContent()) : List.of())
+                .content(posts.hasContent() ? toPostDtoList(posts.getContent(), tagsByPostId) : List.of())
                 .sort(posts.getSort())
                 .first(posts.isFirst())
                 .last(posts.isLast())
@@ -114,7 +121,14 @@ public final class PostMapperFactory {
         }
     }
 
-    public static List<PostDto> toPostDtoList(List<Post> posts) {
-        return (posts == null) ? List.of() : posts.stream().map(PostMapperFactory::toPostDto).toList();
+    public static List<PostDto> toPostDtoList(List<Post> posts, Map<UUID, List<String>> tagsByPostId) {
+        return (posts == null)
+                ? List.of()
+                : posts.stream().map(post -> toPostDto(post, tagsByPostId.getOrDefault(post.getId(), List.of()))).toList();
+    }
+
+    public static Map<UUID, List<String>> toTagsByPostId(List<PostTagView> tags) {
+        return tags.stream().collect(Collectors.groupingBy(PostTagView::postId,
+                Collectors.mapping(PostTagView::tag, Collectors.toList())));
     }
 }
\ No newline at end of file
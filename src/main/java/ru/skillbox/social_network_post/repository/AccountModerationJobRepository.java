@@ -0,0 +1,31 @@
+package ru.skillbox.social_network_post.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.skillbox.social_network_post.entity.AccountModerationJob;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface AccountModerationJobRepository extends JpaRepository<AccountModerationJob, Long> {
+
+    // SKIP LOCKED: экземпляры сервиса разбирают разные задачи параллельно
+    @Query(nativeQuery = true, value = """
+            SELECT * FROM {h-schema}account_moderation_jobs
+            WHERE stage <> 'DONE'
+            ORDER BY id
+            LIMIT 1
+            FOR UPDATE SKIP LOCKED""")
+    Optional<AccountModerationJob> lockNextPending();
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM AccountModerationJob j WHERE j.stage = ru.skillbox.social_network_post.entity.ModerationStage.DONE " +
+            "AND j.updatedAt < :before")
+    int deleteFinishedBefore(@Param("before") LocalDateTime before);
+}
@@ -1,43 +1,120 @@
 package ru.skillbox.social_network_post.repository;
 
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import ru.skillbox.social_network_post.entity.Comment;
+import ru.skillbox.social_network_post.repository.projection.CommentView;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, UUID>, JpaSpecificationExecutor<Comment> {
 
-    Page<Comment> findByParentCommentIdAndPostId(UUID commentId, UUID postId, Pageable pageable);
+    String COMMENT_VIEW = "SELECT new ru.skillbox.social_network_post.repository.projection.CommentView(" +
+            "c.id, c.commentType, c.time, c.timeChanged, c.authorId, c.parentComment.id, c.commentText, c.post.id, " +
+            "c.isBlocked, c.isDeleted, c.likeAmount, c.commentsCount, c.imagePath) FROM Comment c ";
 
+    // Id поста и родителя берутся из внешних ключей, связанные сущности не загружаются
+    @Query(value = COMMENT_VIEW + "WHERE c.parentComment.id = :commentId AND c.post.id = :postId",
+            countQuery = "SELECT COUNT(c) FROM Comment c WHERE c.parentComment.id = :commentId AND c.post.id = :postId")
+    Page<CommentView> findViewsByParentCommentIdAndPostId(@Param("commentId") UUID commentId,
+                                                          @Param("postId") UUID postId,
+                                                          Pageable pageable);
+
+    // Поддерево по материализованному пути: префиксный LIKE использует индекс thread_path (text_pattern_ops)
+    @Query(COMMENT_VIEW + "WHERE c.post.id = :postId AND c.threadPath LIKE :pathPrefix AND c.isDeleted = false " +
+            "ORDER BY c.depth, c.time, c.id")
+    List<CommentView> findSubtree(@Param("postId") UUID postId, @Param("pathPrefix") String pathPrefix, Limit limit);
+
+    // Первые :limit ответов на каждый из комментариев: по одному range scan индекса (parent_id, time, id) на родителя
+    @Query(nativeQuery = true, value = """
+            SELECT r.* FROM {h-schema}comments p
+            CROSS JOIN LATERAL (
+                SELECT c.* FROM {h-schema}comments c
+                WHERE c.parent_id = p.id AND c.is_deleted = false
+                ORDER BY c.time, c.id
+                LIMIT :limit
+            ) r
+            WHERE p.post_id = :postId AND p.id IN (:parentIds)
+            ORDER BY r.parent_id, r.time, r.id""")
+    List<Comment> findTopReplies(@Param("postId") UUID postId,
+                                 @Param("parentIds") Collection<UUID> parentIds,
+                                 @Param("limit") int limit);
+
+    // Родитель блокируется до конца транзакции: его путь не изменится, пока под ним создается или переносится ответ
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Comment c WHERE c.id = :commentId")
+    Optional<Comment> findByIdForUpdate(@Param("commentId") UUID commentId);
+
+    @Query("SELECT COALESCE(MAX(c.depth), -1) FROM Comment c WHERE c.threadPath LIKE :pathPrefix")
+    int findMaxDepthByPathPrefix(@Param("pathPrefix") String pathPrefix);
+
+    // Перенос поддерева: заменяет префикс пути у всех потомков и сдвигает их глубину
     @Transactional
     @Modifying
-    @Query("UPDATE Comment c SET c.isDeleted = true WHERE c.post.id = :postId")
-    void markAllAsDeletedByPostId(@Param("postId") UUID postId);
+    @Query(nativeQuery = true, value = """
+            UPDATE {h-schema}comments
+            SET thread_path = :newPrefix || substring(thread_path FROM char_length(:oldPrefix) + 1),
+                depth = depth + :depthDelta
+            WHERE thread_path LIKE :oldPrefix || '%'""")
+    void movePaths(@Param("oldPrefix") String oldPrefix,
+                   @Param("newPrefix") String newPrefix,
+                   @Param("depthDelta") int depthDelta);
 
     @Transactional
     @Modifying
-    @Query("UPDATE Comment c SET c.isDeleted = true WHERE c.post.id = :postId AND c.id = :commentId")
-    void markCommentAsDeletedByPostIdAndCommentId(@Param("postId")UUID postId, @Param("commentId") UUID commentId);
+    @Query("UPDATE Comment c SET c.isDeleted = true WHERE c.post.id = :postId")
+    void markAllAsDeletedByPostId(@Param("postId") UUID postId);
 
+    // Мягкое удаление всего поддерева комментария одним запросом: рекурсивный CTE собирает ответы любой глубины,
+    // счетчик поста уменьшается на фактическое число удаленных строк, у родителя — на один прямой ответ.
+    // Возвращает число помеченных комментариев
     @Transactional
-    @Modifying
-    @Query("UPDATE Comment c SET c.likeAmount = c.likeAmount + 1 WHERE c.id = :commentId")
-    void incrementLikeAmount(@Param("commentId") UUID commentId);
+    @Query(nativeQuery = true, value = """
+            WITH RECURSIVE subtree AS (
+                SELECT id FROM {h-schema}comments WHERE id = :commentId AND post_id = :postId
+                UNION ALL
+                SELECT c.id FROM {h-schema}comments c JOIN subtree s ON c.parent_id = s.id
+            ),
+            marked AS (
+                UPDATE {h-schema}comments c SET is_deleted = true
+                FROM subtree s
+                WHERE c.id = s.id AND c.is_deleted = false
+                RETURNING c.id
+            ),
+            post_counter AS (
+                UPDATE {h-schema}posts p
+                SET comments_count = GREATEST(p.comments_count - (SELECT COUNT(*) FROM marked), 0)
+                WHERE p.id = :postId
+            ),
+            parent_counter AS (
+                UPDATE {h-schema}comments pc
+                SET comments_count = GREATEST(pc.comments_count - 1, 0)
+                WHERE pc.id = (SELECT parent_id FROM {h-schema}comments WHERE id = :commentId)
+                  AND EXISTS (SELECT 1 FROM marked WHERE id = :commentId)
+            )
+            SELECT COUNT(*) FROM marked""")
+    long softDeleteSubtree(@Param("postId") UUID postId, @Param("commentId") UUID commentId);
 
+    // Свернутая дельта из ReactionCounterBuffer
     @Transactional
     @Modifying
-    @Query("UPDATE Comment c SET c.likeAmount = c.likeAmount - 1 WHERE c.id = :commentId")
-    void updateLikeAmount(@Param("commentId") UUID commentId);
+    @Query("UPDATE Comment c SET c.likeAmount = c.likeAmount + :delta WHERE c.id = :commentId")
+    void addLikeAmount(@Param("commentId") UUID commentId, @Param("delta") int delta);
 
     @Query("SELECT c.likeAmount FROM Comment c WHERE c.id = :commentId")
     int getLikeAmount(@Param("commentId") UUID commentId);
@@ -50,8 +127,78 @@ public interface CommentRepository extends JpaRepository<Comment, UUID>, JpaSpec
     void incrementCommentsAmount(@Param("parentId") UUID parentId);
 
 
+    // Чанки комментариев аккаунта для фоновой модерации; FOR UPDATE держит блокировку только на чанк
+    @Query(nativeQuery = true, value = """
+            SELECT id FROM {h-schema}comments
+            WHERE author_id = :accountId AND is_blocked = false
+            ORDER BY id
+            LIMIT :limit
+            FOR UPDATE""")
+    List<UUID> lockNotBlockedChunkByAuthor(@Param("accountId") UUID accountId, @Param("limit") int limit);
+
+    @Query(nativeQuery = true, value = """
+            SELECT id FROM {h-schema}comments
+            WHERE author_id = :accountId AND is_deleted = false
+            ORDER BY id
+            LIMIT :limit
+            FOR UPDATE""")
+    List<UUID> lockNotDeletedChunkByAuthor(@Param("accountId") UUID accountId, @Param("limit") int limit);
+
+    @Query("SELECT DISTINCT c.post.id FROM Comment c WHERE c.id IN :commentIds")
+    List<UUID> findPostIdsByIds(@Param("commentIds") Collection<UUID> commentIds);
+
+    @Query("SELECT DISTINCT c.parentComment.id FROM Comment c WHERE c.id IN :commentIds AND c.parentComment IS NOT NULL")
+    List<UUID> findParentIdsByIds(@Param("commentIds") Collection<UUID> commentIds);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Comment c SET c.isBlocked = :blocked WHERE c.id IN :commentIds")
+    void updateBlockedStatusByIds(@Param("commentIds") Collection<UUID> commentIds, @Param("blocked") boolean blocked);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Comment c SET c.isDeleted = true WHERE c.id IN :commentIds")
+    void markAsDeletedByIds(@Param("commentIds") Collection<UUID> commentIds);
+
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            UPDATE {h-schema}comments pc
+            SET comments_count = (SELECT COUNT(*) FROM {h-schema}comments c WHERE c.parent_id = pc.id AND c.is_deleted = false)
+            WHERE pc.id IN (:parentIds)""")
+    void recalculateCommentsAmount(@Param("parentIds") Collection<UUID> parentIds);
+
+    // Пересчет лайков по фактическим записям за вычетом несвернутых дельт, как PostRepository.recalculateReactionsCount
+    @Transactional
+    @Modifying
+    @Query(nativeQuery = true, value = """
+            UPDATE {h-schema}comments c
+            SET like_amount = actual.count
+            FROM (
+                SELECT c2.id,
+                       (SELECT COUNT(*) FROM {h-schema}reactions r WHERE r.comment_id = c2.id AND r.is_blocked = false)
+                       - (SELECT COALESCE(SUM(d.delta), 0) FROM {h-schema}reaction_counter_deltas d
+                          WHERE d.comment_id = c2.id) AS count
+                FROM {h-schema}comments c2
+                WHERE c2.id IN (:commentIds)
+            ) actual
+            WHERE c.id = actual.id AND c.like_amount IS DISTINCT FROM actual.count""")
+    int recalculateLikeAmount(@Param("commentIds") Collection<UUID> commentIds);
+
+    // То же для всех комментариев постов чанка ночной сверки
     @Transactional
     @Modifying
-    @Query("UPDATE Comment c SET c.isDeleted = true WHERE c.parentComment.id = :commentId")
-    void markAllAsDeletedByParentComment(@Param("commentId") UUID commentId);
-}
\ No newline at end of file
+    @Query(nativeQuery = true, value = """
+            UPDATE {h-schema}comments c
+            SET like_amount = actual.count
+            FROM (
+                SELECT c2.id,
+                       (SELECT COUNT(*) FROM {h-schema}reactions r WHERE r.comment_id = c2.id AND r.is_blocked = false)
+                       - (SELECT COALESCE(SUM(d.delta), 0) FROM {h-schema}reaction_counter_deltas d
+                          WHERE d.comment_id = c2.id) AS count
+                FROM {h-schema}comments c2
+                WHERE c2.post_id IN (:postIds)
+            ) actual
+            WHERE c.id = actual.id AND c.like_amount IS DISTINCT FROM actual.count""")
+    int recalculateLikeAmountsByPostIds(@Param("postIds") Collection<UUID> postIds);
+}
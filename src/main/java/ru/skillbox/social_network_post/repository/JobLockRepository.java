@@ -0,0 +1,32 @@
+package ru.skillbox.social_network_post.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.skillbox.social_network_post.entity.JobLock;
+
+@Repository
+public interface JobLockRepository extends JpaRepository<JobLock, String> {
+
+    // Захват или продление блокировки: строка обновляется, только если блокировка истекла или уже наша.
+    // Время берем из базы, чтобы расхождение часов экземпляров не влияло на срок
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            INSERT INTO {h-schema}job_locks AS l (name, locked_until, locked_at, locked_by)
+            VALUES (:name, now() + make_interval(secs => :leaseSeconds), now(), :owner)
+            ON CONFLICT (name) DO UPDATE
+            SET locked_until = EXCLUDED.locked_until, locked_at = EXCLUDED.locked_at, locked_by = EXCLUDED.locked_by
+            WHERE l.locked_until <= now() OR l.locked_by = EXCLUDED.locked_by""")
+    int tryLock(@Param("name") String name, @Param("leaseSeconds") double leaseSeconds, @Param("owner") String owner);
+
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            UPDATE {h-schema}job_locks SET locked_until = now()
+            WHERE name = :name AND locked_by = :owner""")
+    int unlock(@Param("name") String name, @Param("owner") String owner);
+}
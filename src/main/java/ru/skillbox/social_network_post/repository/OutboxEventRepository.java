@@ -0,0 +1,21 @@
+package ru.skillbox.social_network_post.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.skillbox.social_network_post.entity.OutboxEvent;
+
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Строки не блокируются: outbox разбирает один экземпляр под блокировкой job_locks,
+    // и транзакция не держится открытой на время отправки в Kafka
+    @Query(nativeQuery = true, value = """
+            SELECT * FROM {h-schema}outbox_events
+            ORDER BY id
+            LIMIT :limit""")
+    List<OutboxEvent> findNextBatch(@Param("limit") int limit);
+}
@@ -0,0 +1,72 @@
+package ru.skillbox.social_network_post.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.skillbox.social_network_post.entity.PostReactionCount;
+import ru.skillbox.social_network_post.entity.PostReactionCountId;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface PostReactionCountRepository extends JpaRepository<PostReactionCount, PostReactionCountId> {
+
+    List<PostReactionCount> findByPostId(UUID postId);
+
+    List<PostReactionCount> findByPostIdIn(Collection<UUID> postIds);
+
+    // Свернутая дельта гистограммы из ReactionCounterBuffer; пост мог быть удален, пока дельта ждала сворачивания
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            INSERT INTO {h-schema}post_reaction_counts AS prc (post_id, reaction_type, count)
+            SELECT p.id, :reactionType, :delta FROM {h-schema}posts p WHERE p.id = :postId
+            ON CONFLICT (post_id, reaction_type) DO UPDATE SET count = prc.count + EXCLUDED.count""")
+    void addCount(@Param("postId") UUID postId, @Param("reactionType") String reactionType, @Param("delta") long delta);
+
+    // Пересчет гистограммы постов по таблице reactions (реакции заблокированных авторов не учитываются)
+    // за вычетом несвернутых дельт: после их сворачивания гистограмма сойдется с reactions.
+    // Upsert вместо DELETE + INSERT: не блокирует всю таблицу
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            INSERT INTO {h-schema}post_reaction_counts AS prc (post_id, reaction_type, count)
+            SELECT actual.post_id, actual.reaction_type, SUM(actual.count)
+            FROM (
+                SELECT post_id, reaction_type, COUNT(*) AS count
+                FROM {h-schema}reactions
+                WHERE comment_id IS NULL AND is_blocked = false AND post_id IN (:postIds)
+                GROUP BY post_id, reaction_type
+                UNION ALL
+                SELECT post_id, reaction_type, -SUM(delta)
+                FROM {h-schema}reaction_counter_deltas
+                WHERE reaction_type IS NOT NULL AND post_id IN (:postIds)
+                GROUP BY post_id, reaction_type
+            ) actual
+            GROUP BY actual.post_id, actual.reaction_type
+            ON CONFLICT (post_id, reaction_type) DO UPDATE SET count = EXCLUDED.count
+            WHERE prc.count IS DISTINCT FROM EXCLUDED.count""")
+    int upsertCountsByPostIds(@Param("postIds") Collection<UUID> postIds);
+
+    // Типы реакций, которых у поста больше нет и по которым не ждут сворачивания дельты
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            DELETE FROM {h-schema}post_reaction_counts prc
+            WHERE prc.post_id IN (:postIds)
+              AND NOT EXISTS (
+                  SELECT 1 FROM {h-schema}reactions r
+                  WHERE r.post_id = prc.post_id AND r.reaction_type = prc.reaction_type
+                    AND r.comment_id IS NULL AND r.is_blocked = false
+              )
+              AND NOT EXISTS (
+                  SELECT 1 FROM {h-schema}reaction_counter_deltas d
+                  WHERE d.post_id = prc.post_id AND d.reaction_type = prc.reaction_type
+              )""")
+    int deleteStaleCountsByPostIds(@Param("postIds") Collection<UUID> postIds);
+}
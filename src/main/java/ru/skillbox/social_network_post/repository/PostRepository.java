@@ -5,10 +5,12 @@ import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
-import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Repository;
 import ru.skillbox.social_network_post.entity.Post;
+import ru.skillbox.social_network_post.repository.projection.PostTagView;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -18,39 +20,76 @@ import org.springframework.transaction.annotation.Transactional;
 @Repository
 public interface PostRepository extends JpaRepository<Post, UUID>, JpaSpecificationExecutor<Post> {
 
-    @EntityGraph(attributePaths = {"comments", "tags"})
-    @NonNull Optional<Post> findById(@NonNull UUID postId);
+    // Для карточки поста нужны только теги, комментарии отдаются отдельным постраничным запросом
+    @EntityGraph(attributePaths = {"tags"})
+    Optional<Post> findWithTagsById(UUID postId);
+
+    // Теги всех постов страницы одним запросом вместо отдельной выборки коллекции на каждый пост
+    @Query("SELECT new ru.skillbox.social_network_post.repository.projection.PostTagView(p.id, t) " +
+            "FROM Post p JOIN p.tags t WHERE p.id IN :postIds")
+    List<PostTagView> findTagsByPostIds(@Param("postIds") Collection<UUID> postIds);
 
     @Modifying
     @Transactional
     @Query("UPDATE Post p SET p.isDeleted = true WHERE p.id = :postId")
     void markAsDeleted(@Param("postId") UUID postId);
 
-    @Query("UPDATE Post p SET p.reactionsCount = p.reactionsCount + 1 WHERE p.id = :postId")
+    // Свернутая дельта из ReactionCounterBuffer
     @Modifying
     @Transactional
-    void incrementReactionsCount(@Param("postId") UUID postId);
+    @Query("UPDATE Post p SET p.reactionsCount = p.reactionsCount + :delta WHERE p.id = :postId")
+    void addReactionsCount(@Param("postId") UUID postId, @Param("delta") long delta);
+
+    @Query("SELECT p.reactionsCount FROM Post p WHERE p.id = :postId")
+    int getReactionsCount(@Param("postId") UUID postId);
 
     @Modifying
     @Transactional
-    @Query("UPDATE Post p SET p.reactionsCount = p.reactionsCount - 1 WHERE p.id = :postId")
-    void updateReactionsCount(@Param("postId") UUID postId);
+    @Query("UPDATE Post p SET p.isBlocked = true WHERE p.authorId IN :accountIds")
+    int updateBlockedStatusForAccounts(@Param("accountIds") Collection<UUID> accountIds);
 
-    @Query("SELECT p.reactionsCount FROM Post p WHERE p.id = :postId")
-    int getReactionsCount(@Param("postId") UUID postId);
+    @Modifying
+    @Transactional
+    @Query("UPDATE Post p SET p.isDeleted = true WHERE p.authorId IN :accountIds")
+    int updateDeletedStatusForAccounts(@Param("accountIds") Collection<UUID> accountIds);
+
+    // Keyset-обход id постов для задач, обрабатывающих всю таблицу чанками
+    @Query(nativeQuery = true, value = """
+            SELECT id FROM {h-schema}posts
+            WHERE id > :afterId
+            ORDER BY id
+            LIMIT :limit""")
+    List<UUID> findIdsAfter(@Param("afterId") UUID afterId, @Param("limit") int limit);
 
+    // Пересчет счетчика реакций по фактическим записям (модерация, ночная сверка) за вычетом несвернутых дельт:
+    // после их сворачивания счетчик сойдется с reactions. Только под ReactionCounterBuffer.lockCounters
     @Modifying
     @Transactional
-    @Query("UPDATE Post p SET p.isBlocked = true WHERE p.authorId = :uuid")
-    void updateBlockedStatusForAccount(UUID uuid);
+    @Query(nativeQuery = true, value = """
+            UPDATE {h-schema}posts p
+            SET reactions_count = actual.count
+            FROM (
+                SELECT p2.id,
+                       (SELECT COUNT(*) FROM {h-schema}reactions r
+                        WHERE r.post_id = p2.id AND r.comment_id IS NULL AND r.is_blocked = false)
+                       - (SELECT COALESCE(SUM(d.delta), 0) FROM {h-schema}reaction_counter_deltas d
+                          WHERE d.post_id = p2.id) AS count
+                FROM {h-schema}posts p2
+                WHERE p2.id IN (:postIds)
+            ) actual
+            WHERE p.id = actual.id AND p.reactions_count IS DISTINCT FROM actual.count""")
+    int recalculateReactionsCount(@Param("postIds") Collection<UUID> postIds);
 
     @Modifying
     @Transactional
-    @Query("UPDATE Post p SET p.isDeleted = true WHERE p.authorId = :uuid")
-    void updateDeletedStatusForAccount(UUID uuid);
+    @Query(nativeQuery = true, value = """
+            UPDATE {h-schema}posts p
+            SET comments_count = (SELECT COUNT(*) FROM {h-schema}comments c WHERE c.post_id = p.id AND c.is_deleted = false)
+            WHERE p.id IN (:postIds)""")
+    void recalculateCommentsCount(@Param("postIds") Collection<UUID> postIds);
 
     @Modifying
     @Transactional
-    @Query("UPDATE Post p SET p.commentsCount = p.commentsCount - :count WHERE p.id = :postId")
-    void decrementCommentCount(@Param("postId") UUID postId, @Param("count") int count);
+    @Query("UPDATE Post p SET p.commentsCount = p.commentsCount + 1 WHERE p.id = :postId")
+    void incrementCommentsCount(@Param("postId") UUID postId);
 }
\ No newline at end of file
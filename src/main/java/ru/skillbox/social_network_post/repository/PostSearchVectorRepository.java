@@ -0,0 +1,23 @@
+package ru.skillbox.social_network_post.repository;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import ru.skillbox.social_network_post.entity.PostSearchVector;
+
+import java.util.List;
+import java.util.UUID;
+
+@org.springframework.stereotype.Repository
+public interface PostSearchVectorRepository extends Repository<PostSearchVector, UUID> {
+
+    // Id постов по убыванию ts_rank через GIN-индекс по search_vector.
+    // Запрос разбирается в тех же конфигурациях, что и search_vector, результаты объединяются через OR
+    @Query(nativeQuery = true, value = """
+            SELECT p.id FROM {h-schema}posts p,
+                (SELECT websearch_to_tsquery('russian', :query) || websearch_to_tsquery('english', :query) AS q) search
+            WHERE p.search_vector @@ search.q
+            ORDER BY ts_rank(p.search_vector, search.q) DESC, p.id DESC
+            LIMIT :limit""")
+    List<UUID> findRankedIds(@Param("query") String query, @Param("limit") int limit);
+}
@@ -0,0 +1,40 @@
+package ru.skillbox.social_network_post.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.skillbox.social_network_post.entity.ReactionCounterDelta;
+import ru.skillbox.social_network_post.repository.projection.ReactionTypeDeltaView;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface ReactionCounterDeltaRepository extends JpaRepository<ReactionCounterDelta, Long> {
+
+    @Query(nativeQuery = true, value = """
+            SELECT * FROM {h-schema}reaction_counter_deltas
+            ORDER BY id
+            LIMIT :limit""")
+    List<ReactionCounterDelta> findNextBatch(@Param("limit") int limit);
+
+    @Query("SELECT COALESCE(SUM(d.delta), 0) FROM ReactionCounterDelta d WHERE d.postId = :postId")
+    long sumByPostId(@Param("postId") UUID postId);
+
+    @Query("SELECT COALESCE(SUM(d.delta), 0) FROM ReactionCounterDelta d WHERE d.commentId = :commentId")
+    long sumByCommentId(@Param("commentId") UUID commentId);
+
+    @Query("SELECT new ru.skillbox.social_network_post.repository.projection.ReactionTypeDeltaView(d.reactionType, SUM(d.delta)) " +
+            "FROM ReactionCounterDelta d WHERE d.postId = :postId GROUP BY d.reactionType")
+    List<ReactionTypeDeltaView> sumByPostIdGroupByType(@Param("postId") UUID postId);
+
+    // Транзакционная advisory-блокировка сворачивания дельт, снимается коммитом или откатом.
+    // Без ожидания — для сворачивания по расписанию
+    @Query(nativeQuery = true, value = "SELECT pg_try_advisory_xact_lock(hashtext('reaction_counter_deltas'))")
+    boolean tryLockCounters();
+
+    // С ожиданием — для пересчета счетчиков, который не должен пересечься со сворачиванием
+    @Query(nativeQuery = true, value = "SELECT 1 FROM pg_advisory_xact_lock(hashtext('reaction_counter_deltas'))")
+    int lockCounters();
+}
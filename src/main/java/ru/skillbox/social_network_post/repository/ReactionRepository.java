@@ -1,18 +1,42 @@
 package ru.skillbox.social_network_post.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.skillbox.social_network_post.entity.Reaction;
+import ru.skillbox.social_network_post.repository.projection.ReactionUpsertView;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface ReactionRepository extends JpaRepository<Reaction, UUID> {
 
-
-    boolean existsByPostIdAndAuthorIdAndCommentIdIsNull(UUID postId, UUID userId);
+    // Одна реакция автора на пост за один запрос: вставка или замена типа по уникальному индексу
+    // (post_id, author_id) WHERE comment_id IS NULL. xmax = 0 только у только что вставленной строки,
+    // is_blocked при замене типа сохраняется
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            WITH previous AS (
+                SELECT reaction_type FROM {h-schema}reactions
+                WHERE post_id = :postId AND author_id = :authorId AND comment_id IS NULL
+            )
+            INSERT INTO {h-schema}reactions AS r (id, post_id, author_id, type, reaction_type, created_at)
+            VALUES (:id, :postId, :authorId, :type, :reactionType, :createdAt)
+            ON CONFLICT (post_id, author_id) WHERE comment_id IS NULL
+            DO UPDATE SET type = EXCLUDED.type, reaction_type = EXCLUDED.reaction_type, created_at = EXCLUDED.created_at
+            RETURNING r.id AS id, (r.xmax = 0) AS inserted, (SELECT reaction_type FROM previous) AS "previousReactionType",
+                r.is_blocked AS blocked""")
+    ReactionUpsertView upsertPostReaction(@Param("id") UUID id,
+                                          @Param("postId") UUID postId,
+                                          @Param("authorId") UUID authorId,
+                                          @Param("type") String type,
+                                          @Param("reactionType") String reactionType,
+                                          @Param("createdAt") LocalDateTime createdAt);
 
     boolean existsByCommentIdAndAuthorId(UUID commentId, UUID userId);
 
@@ -20,16 +44,60 @@ public interface ReactionRepository extends JpaRepository<Reaction, UUID> {
 
     void deleteByCommentIdAndAuthorId(UUID commentId, UUID userId);
 
-    long countByPostId(UUID postId);
+    // Удаление лайка комментария с признаком блокировки удаленной строки: заблокированная реакция в счетчике не учтена
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            DELETE FROM {h-schema}reactions
+            WHERE comment_id = :commentId AND author_id = :authorId
+            RETURNING is_blocked""")
+    List<Boolean> deleteCommentReactionReturningBlocked(@Param("commentId") UUID commentId,
+                                                        @Param("authorId") UUID authorId);
 
-    @Query("SELECT r.reactionType, COUNT(r) FROM Reaction r WHERE r.post.id = :postId GROUP BY r.reactionType")
-    List<Object[]> countReactionsByPostId(@Param("postId") UUID postId);
+    long countByPostId(UUID postId);
 
     @Query("SELECT r FROM Reaction r WHERE r.post.id = :postId AND r.authorId = :authorId AND r.commentId IS NULL")
     Optional<Reaction> findByPostIdAndAuthorId(@Param("postId") UUID postId, @Param("authorId") UUID authorId);
 
+    @Query("SELECT r.post.id, r.reactionType FROM Reaction r WHERE r.post.id IN :postIds AND r.authorId = :authorId AND r.commentId IS NULL")
+    List<Object[]> findReactionTypesByPostIdsAndAuthorId(@Param("postIds") Collection<UUID> postIds,
+                                                         @Param("authorId") UUID authorId);
+
     @Query("SELECT COUNT(r) > 0 FROM Reaction r WHERE r.post.id = :postId AND r.commentId = :commentId AND r.authorId = :authorId")
     boolean existsByPostIdAndCommentIdAndAuthorId(@Param("postId") UUID postId,
                                                   @Param("commentId") UUID commentId,
                                                   @Param("authorId") UUID authorId);
-}
\ No newline at end of file
+
+    @Query("SELECT r.commentId FROM Reaction r WHERE r.post.id = :postId AND r.commentId IN :commentIds AND r.authorId = :authorId")
+    List<UUID> findLikedCommentIds(@Param("postId") UUID postId,
+                                   @Param("commentIds") Collection<UUID> commentIds,
+                                   @Param("authorId") UUID authorId);
+
+    // Чанк реакций аккаунта для фоновой модерации
+    @Query(nativeQuery = true, value = """
+            SELECT id FROM {h-schema}reactions
+            WHERE author_id = :accountId
+            ORDER BY id
+            LIMIT :limit
+            FOR UPDATE""")
+    List<UUID> lockChunkByAuthor(@Param("accountId") UUID accountId, @Param("limit") int limit);
+
+    @Query(nativeQuery = true, value = """
+            SELECT id FROM {h-schema}reactions
+            WHERE author_id = :accountId AND is_blocked = false
+            ORDER BY id
+            LIMIT :limit
+            FOR UPDATE""")
+    List<UUID> lockNotBlockedChunkByAuthor(@Param("accountId") UUID accountId, @Param("limit") int limit);
+
+    // Реакции заблокированного автора остаются в таблице, но не входят в счетчики
+    @Transactional
+    @Modifying
+    @Query("UPDATE Reaction r SET r.isBlocked = :blocked WHERE r.id IN :reactionIds")
+    void updateBlockedStatusByIds(@Param("reactionIds") Collection<UUID> reactionIds, @Param("blocked") boolean blocked);
+
+    @Query("SELECT DISTINCT r.post.id FROM Reaction r WHERE r.id IN :reactionIds")
+    List<UUID> findPostIdsByIds(@Param("reactionIds") Collection<UUID> reactionIds);
+
+    @Query("SELECT DISTINCT r.commentId FROM Reaction r WHERE r.id IN :reactionIds AND r.commentId IS NOT NULL")
+    List<UUID> findCommentIdsByIds(@Param("reactionIds") Collection<UUID> reactionIds);
+}
@@ -0,0 +1,23 @@
+package ru.skillbox.social_network_post.repository.projection;
+
+import ru.skillbox.social_network_post.entity.CommentType;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Плоская выборка комментария для списков: только колонки ответа, без загрузки поста и родителя
+public record CommentView(
+        UUID id,
+        CommentType commentType,
+        LocalDateTime time,
+        LocalDateTime timeChanged,
+        UUID authorId,
+        UUID parentId,
+        String commentText,
+        UUID postId,
+        Boolean isBlocked,
+        Boolean isDeleted,
+        Integer likeAmount,
+        Integer commentsCount,
+        String imagePath) {
+}
@@ -0,0 +1,8 @@
+package ru.skillbox.social_network_post.repository.projection;
+
+import java.util.UUID;
+
+public interface PostIdView {
+
+    UUID getId();
+}
@@ -0,0 +1,7 @@
+package ru.skillbox.social_network_post.repository.projection;
+
+import java.util.UUID;
+
+// Строка post_tags: тег поста для пакетной загрузки тегов страницы
+public record PostTagView(UUID postId, String tag) {
+}
@@ -0,0 +1,5 @@
+package ru.skillbox.social_network_post.repository.projection;
+
+// Сумма несвернутых дельт гистограммы поста по типу реакции
+public record ReactionTypeDeltaView(String reactionType, Long delta) {
+}
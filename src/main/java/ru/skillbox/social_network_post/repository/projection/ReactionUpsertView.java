@@ -0,0 +1,18 @@
+package ru.skillbox.social_network_post.repository.projection;
+
+import java.util.UUID;
+
+// Результат upsert реакции на пост: вставка новой строки или замена типа существующей
+public interface ReactionUpsertView {
+
+    UUID getId();
+
+    // true — строка вставлена (xmax = 0), false — обновлена по конфликту
+    Boolean getInserted();
+
+    // Тип реакции до обновления, null при вставке
+    String getPreviousReactionType();
+
+    // Реакция заблокированного аккаунта: в счетчиках не учитывается, смена ее типа их не меняет
+    Boolean getBlocked();
+}
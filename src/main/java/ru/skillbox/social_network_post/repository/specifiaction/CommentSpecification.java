@@ -4,14 +4,20 @@ import jakarta.persistence.criteria.Predicate;
 import org.springframework.data.jpa.domain.Specification;
 import ru.skillbox.social_network_post.dto.CommentSearchDto;
 import ru.skillbox.social_network_post.entity.Comment;
+import ru.skillbox.social_network_post.utils.CursorUtils;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.function.Function;
 
 public interface CommentSpecification {
 
+    String POST = "post";
+    String TIME = "time";
+    char LIKE_ESCAPE = '\\';
+
     static Specification<Comment> withFilters(CommentSearchDto commentSearchDto) {
         return (root, query, criteriaBuilder) -> {
 
@@ -36,21 +42,59 @@ public interface CommentSpecification {
                     parentId -> criteriaBuilder.equal(root.get("parentComment"), parentId));
 
             addPredicate(predicates, commentSearchDto.getPostId(),
-                    postId -> criteriaBuilder.equal(root.get("post").get("id"), postId));
+                    postId -> criteriaBuilder.equal(root.get(POST).get("id"), postId));
 
+            // Подстрочный поиск обслуживают триграммные GIN-индексы (db-changelog-11): выражение lower(comment_text)
+            // должно совпадать с индексным, а спецсимволы LIKE из запроса экранируются
             Optional.ofNullable(commentSearchDto.getCommentText())
                     .filter(text -> !text.isBlank())
                     .ifPresent(text -> predicates.add(criteriaBuilder.like(
-                            criteriaBuilder.lower(root.get("commentText")), "%" + text.toLowerCase() + "%")));
+                            criteriaBuilder.lower(root.get("commentText")), containsPattern(text.toLowerCase()), LIKE_ESCAPE)));
 
             Optional.ofNullable(commentSearchDto.getImagePath())
                     .filter(path -> !path.isBlank())
-                    .ifPresent(path -> predicates.add(criteriaBuilder.like(root.get("imagePath"), "%" + path + "%")));
+                    .ifPresent(path -> predicates.add(criteriaBuilder.like(
+                            root.get("imagePath"), containsPattern(path), LIKE_ESCAPE)));
 
             return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
         };
     }
 
+    // Ответы на комментарий в рамках поста
+    static Specification<Comment> byParent(UUID postId, UUID parentId) {
+        return (root, query, criteriaBuilder) -> criteriaBuilder.and(
+                criteriaBuilder.equal(root.get(POST).get("id"), postId),
+                criteriaBuilder.equal(root.get("parentComment").get("id"), parentId)
+        );
+    }
+
+    // Keyset-условие для комментариев, упорядоченных по (time ASC, id ASC)
+    static Specification<Comment> afterCursor(CursorUtils.Cursor cursor) {
+        return (root, query, criteriaBuilder) -> {
+            if (cursor == null) {
+                return criteriaBuilder.conjunction();
+            }
+
+            return criteriaBuilder.or(
+                    criteriaBuilder.greaterThan(root.get(TIME), cursor.time()),
+                    criteriaBuilder.and(
+                            criteriaBuilder.equal(root.get(TIME), cursor.time()),
+                            criteriaBuilder.greaterThan(root.get("id"), cursor.id())
+                    )
+            );
+        };
+    }
+
+    // '%x%' с экранированием '%', '_' и самого символа экранирования
+    private static String containsPattern(String value) {
+        String escaped = value
+                .replace(String.valueOf(LIKE_ESCAPE), String.valueOf(LIKE_ESCAPE) + LIKE_ESCAPE)
+                .replace("%", LIKE_ESCAPE + "%")
+                .replace("_", LIKE_ESCAPE + "_");
+
+        return "%" + escaped + "%";
+    }
+
     private static <T> void addPredicate(List<Predicate> predicates, T value, Function<T, Predicate> predicateFunction) {
         Optional.ofNullable(value).ifPresent(v -> predicates.add(predicateFunction.apply(v)));
     }
@@ -1,11 +1,14 @@
 package ru.skillbox.social_network_post.repository.specifiaction;
 
 import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 import org.springframework.data.jpa.domain.Specification;
 import ru.skillbox.social_network_post.entity.Post;
 import ru.skillbox.social_network_post.dto.PostSearchDto;
+import ru.skillbox.social_network_post.utils.CursorUtils;
 import jakarta.persistence.criteria.Predicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,6 +16,7 @@ import org.slf4j.LoggerFactory;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -21,6 +25,7 @@ public interface PostSpecification {
 
     Logger log = LoggerFactory.getLogger(PostSpecification.class);
     String AUTHOR_ID = "authorId";
+    String PUBLISH_DATE = "publishDate";
 
     static Specification<Post> withFilters(PostSearchDto postSearchDto, UUID currentAccountId) {
 
@@ -42,7 +47,7 @@ public interface PostSpecification {
 
             addPostTextPredicate(postSearchDto.getPostText(), root, criteriaBuilder, predicates);
 
-            addTagsPredicate(postSearchDto.getTags(), root, predicates);
+            addTagsPredicate(postSearchDto.getTags(), root, query, criteriaBuilder, predicates);
 
             addDateFromPredicate(postSearchDto.getDateFrom(), root, criteriaBuilder, predicates);
 
@@ -54,6 +59,28 @@ public interface PostSpecification {
         };
     }
 
+    // Ограничение выдачи совпадениями полнотекстового поиска (PostSearchVectorRepository)
+    static Specification<Post> withIds(Collection<UUID> postIds) {
+        return (root, query, criteriaBuilder) -> root.get("id").in(postIds);
+    }
+
+    // Keyset-условие для ленты, упорядоченной по (publishDate DESC, id DESC)
+    static Specification<Post> afterCursor(CursorUtils.Cursor cursor) {
+        return (root, query, criteriaBuilder) -> {
+            if (cursor == null) {
+                return criteriaBuilder.isNotNull(root.get(PUBLISH_DATE));
+            }
+
+            return criteriaBuilder.or(
+                    criteriaBuilder.lessThan(root.get(PUBLISH_DATE), cursor.time()),
+                    criteriaBuilder.and(
+                            criteriaBuilder.equal(root.get(PUBLISH_DATE), cursor.time()),
+                            criteriaBuilder.lessThan(root.get("id"), cursor.id())
+                    )
+            );
+        };
+    }
+
     private static void addPostIdsPredicate(List<UUID> postIds, Root<Post> root, List<Predicate> predicates) {
         if (postIds != null && !postIds.isEmpty()) {
             log.warn("Adding predicate for post IDs: {}", postIds);
@@ -128,11 +155,15 @@ public interface PostSpecification {
         }
     }
 
-    private static void addTagsPredicate(List<String> tags, Root<Post> root, List<Predicate> predicates) {
+    // EXISTS вместо join: пост с несколькими подходящими тегами не дублируется в выдаче и в count
+    private static void addTagsPredicate(List<String> tags, Root<Post> root, CriteriaQuery<?> query,
+                                         CriteriaBuilder criteriaBuilder, List<Predicate> predicates) {
         if (tags != null && !tags.isEmpty()) {
             log.warn("Adding predicate for post tags: {}", tags);
-            Join<Post, String> tagsJoin = root.join("tags");
-            predicates.add(tagsJoin.in(tags));
+            Subquery<Integer> tagQuery = query.subquery(Integer.class);
+            Join<Post, String> tagsJoin = tagQuery.correlate(root).join("tags");
+            tagQuery.select(criteriaBuilder.literal(1)).where(tagsJoin.in(tags));
+            predicates.add(criteriaBuilder.exists(tagQuery));
         } else {
             log.warn("No tags to filter.");
         }
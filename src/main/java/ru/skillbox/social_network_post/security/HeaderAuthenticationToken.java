@@ -10,11 +10,18 @@ public class HeaderAuthenticationToken extends AbstractAuthenticationToken {
     private final List<SimpleGrantedAuthority> authorities;
     private final UUID userId;
     private final String userName;
+    // Bearer-токен запроса, с ним Feign-клиенты ходят в соседние сервисы
+    private final String token;
 
     public HeaderAuthenticationToken(UUID userId, String userName, List<SimpleGrantedAuthority> authorities) {
+        this(userId, userName, authorities, null);
+    }
+
+    public HeaderAuthenticationToken(UUID userId, String userName, List<SimpleGrantedAuthority> authorities, String token) {
         super(authorities != null ? authorities : new ArrayList<>());
         this.userId = userId;
         this.userName = userName;
+        this.token = token;
         this.authorities = authorities != null ? authorities : new ArrayList<>();
         setAuthenticated(true);
     }
@@ -26,8 +33,8 @@ public class HeaderAuthenticationToken extends AbstractAuthenticationToken {
 
 
     @Override
-    public Object getCredentials() {
-        return null;
+    public String getCredentials() {
+        return token;
     }
 
     @Override
@@ -0,0 +1,17 @@
+package ru.skillbox.social_network_post.security;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+// Разобранный один раз payload JWT. expiresAt == null, если в токене нет поля exp
+public record JwtClaims(String username, UUID userId, List<String> roles, Instant expiresAt) {
+
+    public JwtClaims {
+        roles = roles != null ? List.copyOf(roles) : List.of();
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && !expiresAt.isAfter(now);
+    }
+}
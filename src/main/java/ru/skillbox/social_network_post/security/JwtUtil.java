@@ -3,6 +3,7 @@ package ru.skillbox.social_network_post.security;
 import org.json.JSONObject;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
 import java.util.Base64;
 import java.util.List;
 import java.util.UUID;
@@ -10,10 +11,28 @@ import java.util.UUID;
 @Component
 public class JwtUtil {
 
+    // Разбор payload один раз: имя пользователя, id, роли и время истечения
+    public JwtClaims parseClaims(String token) {
+        JSONObject json = extractPayload(token);
+
+        return new JwtClaims(extractUsername(json), extractUserId(json), extractRoles(json), extractExpiration(json));
+    }
+
     // Извлечение имени пользователя
     public String extractUsername(String token) {
-        JSONObject json = extractPayload(token);
+        return parseClaims(token).username();
+    }
+
+    public UUID extractUserId(String token) {
+        return parseClaims(token).userId();
+    }
+
+    // Извлечение ролей
+    public List<String> extractRoles(String token) {
+        return parseClaims(token).roles();
+    }
 
+    private static String extractUsername(JSONObject json) {
         String username = json.optString("sub", null);
         if (username == null) {
             throw new IllegalArgumentException("Invalid JWT token: missing or empty 'sub' field");
@@ -21,10 +40,7 @@ public class JwtUtil {
         return username;
     }
 
-    public UUID extractUserId(String token) {
-        // Извлечение полезной нагрузки из JWT
-        JSONObject json = extractPayload(token);
-
+    private static UUID extractUserId(JSONObject json) {
         // Получаем строку userId
         String userIdStr = json.optString("accountId", "");
 
@@ -34,13 +50,14 @@ public class JwtUtil {
         }
 
         // Преобразуем строку в UUID
-        return UUID.fromString(userIdStr);
+        try {
+            return UUID.fromString(userIdStr);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid JWT token: malformed 'accountId' field", e);
+        }
     }
 
-    // Извлечение ролей
-    public List<String> extractRoles(String token) {
-        JSONObject json = extractPayload(token);
-
+    private static List<String> extractRoles(JSONObject json) {
         // Если поле roles присутствует, преобразуем его в список строк
         return json.optJSONArray("roles") != null
                 ? json.optJSONArray("roles").toList().stream()
@@ -49,6 +66,11 @@ public class JwtUtil {
                 : List.of(); // Возвращаем пустой список, если ролей нет
     }
 
+    // exp — секунды от эпохи (RFC 7519)
+    private static Instant extractExpiration(JSONObject json) {
+        return json.has("exp") ? Instant.ofEpochSecond(json.optLong("exp")) : null;
+    }
+
     // Извлечение полезной нагрузки (payload) из токена
     private JSONObject extractPayload(String token) {
         String[] chunks = token.split("\\.");
@@ -0,0 +1,14 @@
+package ru.skillbox.social_network_post.security;
+
+// Способ проверки подписи и срока действия токена
+public enum JwtVerificationMode {
+
+    // Каждый токен проверяет auth-сервис
+    REMOTE,
+
+    // Подпись и exp проверяются локально по настроенным ключам
+    LOCAL,
+
+    // Локальная проверка, а токены с неизвестным ключом (kid) проверяет auth-сервис
+    LOCAL_WITH_REMOTE_FALLBACK
+}
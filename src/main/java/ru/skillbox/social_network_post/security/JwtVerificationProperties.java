@@ -0,0 +1,33 @@
+package ru.skillbox.social_network_post.security;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "security.jwt")
+public class JwtVerificationProperties {
+
+    private JwtVerificationMode verification = JwtVerificationMode.REMOTE;
+
+    // Набор ключей для локальной проверки, ключ выбирается по заголовку kid
+    private List<KeyProperties> keys = new ArrayList<>();
+
+
+    @Getter
+    @Setter
+    public static class KeyProperties {
+
+        private String kid;
+
+        // Base64-секрет для HS256/HS384/HS512
+        private String secret;
+
+        // Base64 X.509 (DER) открытый ключ для RS256/RS384/RS512
+        private String publicKey;
+    }
+}
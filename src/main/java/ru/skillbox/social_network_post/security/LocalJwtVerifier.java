@@ -0,0 +1,135 @@
+package ru.skillbox.social_network_post.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.spec.X509EncodedKeySpec;
+import java.text.MessageFormat;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Проверка подписи и срока действия JWT без обращения к auth-сервису.
+ * Ключи передаются в jjwt объектами Key, поэтому base64-кодек библиотеки (JAXB) не используется.
+ */
+@Slf4j
+@Component
+public class LocalJwtVerifier {
+
+    public enum Result {
+        VALID,
+        INVALID,
+        // Ключ для токена не настроен — решение остается за auth-сервисом
+        UNVERIFIABLE
+    }
+
+    // Ключ без kid, используется, если в наборе он единственный
+    private static final String DEFAULT_KID = "";
+
+    private final Map<String, Key> keys;
+
+
+    public LocalJwtVerifier(JwtVerificationProperties properties) {
+        Map<String, Key> parsedKeys = new HashMap<>();
+
+        for (JwtVerificationProperties.KeyProperties keyProperty : properties.getKeys()) {
+            String kid = keyProperty.getKid() != null ? keyProperty.getKid() : DEFAULT_KID;
+            parsedKeys.put(kid, toKey(keyProperty));
+        }
+
+        // Без ключей локальная проверка не подтвердит ни один токен, поэтому такая конфигурация — ошибка запуска
+        if (parsedKeys.isEmpty() && properties.getVerification() != JwtVerificationMode.REMOTE) {
+            throw new IllegalStateException(MessageFormat.format(
+                    "security.jwt.verification={0} requires at least one key in security.jwt.keys",
+                    properties.getVerification()));
+        }
+
+        this.keys = Map.copyOf(parsedKeys);
+        log.info("Local JWT verification keys loaded: {}", keys.keySet());
+    }
+
+
+    public Result verify(String token) {
+        if (keys.isEmpty()) {
+            return Result.UNVERIFIABLE;
+        }
+
+        try {
+            // parseClaimsJws проверяет подпись, exp и nbf
+            Jwts.parser()
+                    .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                        @Override
+                        public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                            return resolveKey(header.getKeyId());
+                        }
+                    })
+                    .parseClaimsJws(token);
+
+            return Result.VALID;
+
+        } catch (UnknownKeyException e) {
+            log.debug("No local key for token: {}", e.getMessage());
+            return Result.UNVERIFIABLE;
+        } catch (JwtException | IllegalArgumentException e) {
+            log.warn("Local JWT verification failed: {}", e.getMessage());
+            return Result.INVALID;
+        }
+    }
+
+
+    private Key resolveKey(String kid) {
+        Key key = kid != null ? keys.get(kid) : null;
+
+        if (key != null) {
+            return key;
+        }
+
+        // Единственный ключ без kid подходит для любого токена
+        if (keys.size() == 1 && keys.containsKey(DEFAULT_KID)) {
+            return keys.get(DEFAULT_KID);
+        }
+
+        // Токен без kid при единственном ключе
+        if (kid == null && keys.size() == 1) {
+            return keys.values().iterator().next();
+        }
+
+        throw new UnknownKeyException("No signing key configured for kid: " + kid);
+    }
+
+
+    private static Key toKey(JwtVerificationProperties.KeyProperties keyProperty) {
+        try {
+            if (keyProperty.getSecret() != null) {
+                return new SecretKeySpec(Base64.getDecoder().decode(keyProperty.getSecret()), "HmacSHA256");
+            }
+
+            if (keyProperty.getPublicKey() != null) {
+                byte[] encoded = Base64.getDecoder().decode(keyProperty.getPublicKey());
+                return KeyFactory.getInstance("RSA").generatePublic(new X509EncodedKeySpec(encoded));
+            }
+
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Invalid JWT key configuration for kid " + keyProperty.getKid(), e);
+        }
+
+        throw new IllegalStateException("JWT key " + keyProperty.getKid() + " must define secret or public-key");
+    }
+
+
+    private static class UnknownKeyException extends RuntimeException {
+        UnknownKeyException(String message) {
+            super(message);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package ru.skillbox.social_network_post.security;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -12,10 +13,14 @@ import ru.skillbox.social_network_post.client.AuthServiceClient;
 
 @Configuration
 @RequiredArgsConstructor
+@EnableConfigurationProperties(JwtVerificationProperties.class)
 public class SecurityConfig {
 
     private final AuthServiceClient authServiceClient;
     private final JwtUtil jwtUtil;
+    private final TokenValidationCache tokenValidationCache;
+    private final LocalJwtVerifier localJwtVerifier;
+    private final JwtVerificationProperties jwtVerificationProperties;
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -26,7 +31,8 @@ public class SecurityConfig {
                         .requestMatchers("/actuator/**").permitAll() // Разрешить доступ ко всем путям /actuator без аутентификации
                         .anyRequest().authenticated()  // Для остальных запросов нужна аутентификация
                 )
-                .addFilterBefore(new TokenAuthenticationFilter(authServiceClient, jwtUtil), UsernamePasswordAuthenticationFilter.class)
+                .addFilterBefore(new TokenAuthenticationFilter(authServiceClient, jwtUtil, tokenValidationCache,
+                        localJwtVerifier, jwtVerificationProperties.getVerification()), UsernamePasswordAuthenticationFilter.class)
                 .build();
     }
 }
\ No newline at end of file
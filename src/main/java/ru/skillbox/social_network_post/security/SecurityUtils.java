@@ -9,24 +9,17 @@ import java.util.UUID;
 @Slf4j
 public class SecurityUtils {
 
-    private static final ThreadLocal<String> tokenHolder = new ThreadLocal<>();
-
     private SecurityUtils() {
     }
 
-    // Сохранение токена в ThreadLocal
-    public static void saveToken(String token) {
-        tokenHolder.set(token);
-    }
-
-    // Удаление токена из ThreadLocal
-    public static void removeToken() {
-        tokenHolder.remove();
-    }
-
-    // Извлечение токена из ThreadLocal
+    // Токен берем из SecurityContext: он передается в другие потоки вместе с контекстом,
+    // а не остается в ThreadLocal переиспользуемого потока пула
     public static String getToken() {
-        return tokenHolder.get();
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getCredentials() instanceof String token) {
+            return token;
+        }
+        return null;
     }
 
     public static UUID getAccountId() {
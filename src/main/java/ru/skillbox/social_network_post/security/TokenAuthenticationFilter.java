@@ -20,6 +20,7 @@ import ru.skillbox.social_network_post.exception.CustomFreignException;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @RequiredArgsConstructor
@@ -28,6 +29,9 @@ public class TokenAuthenticationFilter extends OncePerRequestFilter {
 
     private final AuthServiceClient authServiceClient; // Сервис для валидации токена через Feign
     private final JwtUtil jwtUtil;
+    private final TokenValidationCache tokenValidationCache;
+    private final LocalJwtVerifier localJwtVerifier;
+    private final JwtVerificationMode verificationMode;
 
     @Override
     protected void doFilterInternal(
@@ -56,54 +60,74 @@ public class TokenAuthenticationFilter extends OncePerRequestFilter {
 
         String token = authHeader.substring(7);
 
-        boolean isTokenValid = false;
-
-        try {
-            isTokenValid = authServiceClient.validateToken(token);
-            log.info("Token valid: {}", isTokenValid);
-        } catch (FeignException e) {
-            throw new CustomFreignException("Error trying to validate token");
-        } catch (Exception e) {
-            log.warn("Unknown error while trying to validate token: {}", e.getMessage());
-        }
-
-        if (!isTokenValid) {
-            unauthorizedResponse(response, "{\"error\": \"Invalid or expired token\"}");
-            return;
-        }
-
-        String userName;
-        UUID userId;
-
-        try {
-            userName = jwtUtil.extractUsername(token);
-            userId = jwtUtil.extractUserId(token);
-            log.warn("Username: {}", userName);
-            log.warn("UserId: {}", userId);
-        } catch (IllegalArgumentException e) {
-            log.error(e.getMessage());
-            unauthorizedResponse(response, e.getMessage());
-            return;
+        // Токен, уже проверенный auth-сервисом, берем из кэша без сетевого вызова
+        Optional<JwtClaims> cachedClaims = tokenValidationCache.get(token);
+
+        JwtClaims claims;
+
+        if (cachedClaims.isPresent()) {
+            claims = cachedClaims.get();
+        } else {
+            if (!isTokenValid(token)) {
+                unauthorizedResponse(response, "{\"error\": \"Invalid or expired token\"}");
+                return;
+            }
+
+            try {
+                claims = jwtUtil.parseClaims(token);
+                log.warn("Username: {}", claims.username());
+                log.warn("UserId: {}", claims.userId());
+            } catch (IllegalArgumentException e) {
+                log.error(e.getMessage());
+                unauthorizedResponse(response, e.getMessage());
+                return;
+            }
+
+            tokenValidationCache.put(token, claims);
         }
 
-
-        List<String> roles = jwtUtil.extractRoles(token);
+        String userName = claims.username();
+        UUID userId = claims.userId();
+        List<String> roles = claims.roles();
 
 
         List<SimpleGrantedAuthority> authorities = roles.stream()
                 .map(SimpleGrantedAuthority::new)
                 .toList();
 
-        SecurityUtils.removeToken();
-        SecurityUtils.saveToken(token);
-        log.warn("Token is saved: {}", token);
-
-        Authentication authentication = new HeaderAuthenticationToken(userId, userName, authorities);
+        Authentication authentication = new HeaderAuthenticationToken(userId, userName, authorities, token);
         SecurityContextHolder.getContext().setAuthentication(authentication);
         log.warn("Successfully authenticated user: {}", userName);
         filterChain.doFilter(request, response);
     }
 
+    private boolean isTokenValid(String token) {
+        return switch (verificationMode) {
+            case REMOTE -> validateRemotely(token);
+            case LOCAL -> localJwtVerifier.verify(token) == LocalJwtVerifier.Result.VALID;
+            case LOCAL_WITH_REMOTE_FALLBACK -> switch (localJwtVerifier.verify(token)) {
+                case VALID -> true;
+                case INVALID -> false;
+                case UNVERIFIABLE -> validateRemotely(token);
+            };
+        };
+    }
+
+    private boolean validateRemotely(String token) {
+        boolean isTokenValid = false;
+
+        try {
+            isTokenValid = authServiceClient.validateToken(token);
+            log.info("Token valid: {}", isTokenValid);
+        } catch (FeignException e) {
+            throw new CustomFreignException("Error trying to validate token");
+        } catch (Exception e) {
+            log.warn("Unknown error while trying to validate token: {}", e.getMessage());
+        }
+
+        return isTokenValid;
+    }
+
     private void unauthorizedResponse(HttpServletResponse response, String message) throws IOException {
         response.setContentType("application/json");
         response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
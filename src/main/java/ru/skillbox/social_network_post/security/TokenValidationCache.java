@@ -0,0 +1,98 @@
+package ru.skillbox.social_network_post.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Кэш успешно провалидированных токенов, чтобы не ходить в auth-сервис на каждый запрос.
+ * Ключ — SHA-256 токена (сам токен в памяти не храним), запись живет до exp токена,
+ * но не дольше max-ttl: так отозванный токен перестает приниматься через ограниченное время.
+ */
+@Component
+public class TokenValidationCache {
+
+    private final Cache<String, JwtClaims> cache;
+
+
+    public TokenValidationCache(MeterRegistry meterRegistry,
+                                @Value("${security.token-cache.max-ttl:5m}") Duration maxTtl,
+                                @Value("${security.token-cache.maximum-size:50000}") long maximumSize) {
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new ClaimsExpiry(maxTtl))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "token_validation");
+    }
+
+
+    public Optional<JwtClaims> get(String token) {
+        JwtClaims claims = cache.getIfPresent(hash(token));
+
+        // Подстраховка на случай, если запись еще не вытеснена, а токен уже истек
+        if (claims != null && claims.isExpired(Instant.now())) {
+            cache.invalidate(hash(token));
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(claims);
+    }
+
+
+    public void put(String token, JwtClaims claims) {
+        if (!claims.isExpired(Instant.now())) {
+            cache.put(hash(token), claims);
+        }
+    }
+
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+
+    private record ClaimsExpiry(Duration maxTtl) implements Expiry<String, JwtClaims> {
+
+        @Override
+        public long expireAfterCreate(@NonNull String key, @NonNull JwtClaims claims, long currentTime) {
+            if (claims.expiresAt() == null) {
+                return maxTtl.toNanos();
+            }
+
+            Duration untilExpiration = Duration.between(Instant.now(), claims.expiresAt());
+            Duration ttl = untilExpiration.compareTo(maxTtl) < 0 ? untilExpiration : maxTtl;
+            return ttl.isNegative() ? 0 : ttl.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(@NonNull String key, @NonNull JwtClaims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(@NonNull String key, @NonNull JwtClaims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package ru.skillbox.social_network_post.service;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface AccountLookupService {
+
+    List<UUID> getFriendsIds(UUID accountId);
+
+    List<UUID> getAuthorIds(String author);
+
+    void evictAll();
+}
@@ -4,7 +4,11 @@ import org.springframework.data.domain.Pageable;
 import ru.skillbox.social_network_post.dto.CommentDto;
 import ru.skillbox.social_network_post.dto.CommentSearchDto;
 import ru.skillbox.social_network_post.dto.PageCommentDto;
+import ru.skillbox.social_network_post.dto.SliceCommentDto;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 
@@ -19,4 +23,12 @@ public interface CommentService {
     void delete(UUID postID, UUID commentId);
 
     PageCommentDto getSubcomments(UUID postId, UUID commentId, Pageable pageable);
+
+    SliceCommentDto getSliceByPostId(UUID postId, CommentSearchDto commentSearchDto, String cursor, int size);
+
+    SliceCommentDto getSubcommentsSlice(UUID postId, UUID commentId, String cursor, int size);
+
+    List<CommentDto> getThread(UUID postId, UUID commentId, int size);
+
+    Map<UUID, List<CommentDto>> getTopReplies(UUID postId, Collection<UUID> commentIds, int limit);
 }
\ No newline at end of file
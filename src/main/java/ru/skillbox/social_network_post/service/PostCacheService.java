@@ -0,0 +1,20 @@
+package ru.skillbox.social_network_post.service;
+
+import ru.skillbox.social_network_post.dto.PageCommentDto;
+import ru.skillbox.social_network_post.dto.PostDto;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+
+public interface PostCacheService {
+
+    PostDto getPost(UUID postId, Supplier<PostDto> loader);
+
+    PageCommentDto getFirstCommentPage(UUID postId, Supplier<PageCommentDto> loader);
+
+    void evictPost(UUID postId);
+
+    void evictComments(UUID postId);
+
+    void evictAll();
+}
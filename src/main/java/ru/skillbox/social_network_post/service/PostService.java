@@ -4,7 +4,9 @@ import org.springframework.data.domain.Pageable;
 import ru.skillbox.social_network_post.dto.PagePostDto;
 import ru.skillbox.social_network_post.dto.PostDto;
 import ru.skillbox.social_network_post.dto.PostSearchDto;
+import ru.skillbox.social_network_post.dto.SlicePostDto;
 
+import java.util.Collection;
 import java.util.UUID;
 
 public interface PostService {
@@ -17,9 +19,15 @@ public interface PostService {
 
     PagePostDto getAll(PostSearchDto postSearchDto, Pageable pageable);
 
+    SlicePostDto getFeed(PostSearchDto postSearchDto, String cursor, int size);
+
     void create(PostDto postDto);
 
     void updateBlockedStatusForAccount(UUID uuid);
 
     void updateDeletedStatusForAccount(UUID uuid);
+
+    void updateBlockedStatusForAccounts(Collection<UUID> accountIds);
+
+    void updateDeletedStatusForAccounts(Collection<UUID> accountIds);
 }
\ No newline at end of file
@@ -3,7 +3,10 @@ package ru.skillbox.social_network_post.service;
 import ru.skillbox.social_network_post.dto.ReactionDto;
 import ru.skillbox.social_network_post.dto.RequestReactionDto;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 public interface ReactionService {
@@ -18,7 +21,13 @@ public interface ReactionService {
 
     List<ReactionDto.ReactionInfo> getReactionInfos(UUID postId);
 
+    Map<UUID, List<ReactionDto.ReactionInfo>> getReactionInfos(Collection<UUID> postIds);
+
     String getMyReaction(UUID postId, UUID accountId);
 
+    Map<UUID, String> getMyReactions(Collection<UUID> postIds, UUID accountId);
+
     Boolean getMyReactionToComment(UUID postId, UUID id, UUID accountId);
+
+    Set<UUID> getMyLikedComments(UUID postId, Collection<UUID> commentIds, UUID accountId);
 }
\ No newline at end of file
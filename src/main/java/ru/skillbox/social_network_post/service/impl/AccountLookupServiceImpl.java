@@ -0,0 +1,170 @@
+package ru.skillbox.social_network_post.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import feign.FeignException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
+import org.springframework.stereotype.Service;
+import ru.skillbox.social_network_post.client.AccountServiceClient;
+import ru.skillbox.social_network_post.client.FriendServiceClient;
+import ru.skillbox.social_network_post.dto.AccountDto;
+import ru.skillbox.social_network_post.exception.CustomFreignException;
+import ru.skillbox.social_network_post.service.AccountLookupService;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Локальный кэш ответов friend- и account-сервисов для фильтров ленты.
+ * Запись старше refresh-after отдается сразу, а в фоне перечитывается (stale-while-revalidate);
+ * запись старше expire-after удаляется, и следующий запрос снова идет в сеть синхронно.
+ * Событий об изменении дружбы сервис не получает, поэтому список друзей устаревает не дольше чем на refresh-after.
+ */
+@Slf4j
+@Service
+public class AccountLookupServiceImpl implements AccountLookupService {
+
+    private final FriendServiceClient friendServiceClient;
+    private final AccountServiceClient accountServiceClient;
+
+    private final long refreshAfterNanos;
+    private final Cache<UUID, CachedIds> friendsCache;
+    private final Cache<String, CachedIds> authorsCache;
+
+    // Ключи, для которых уже идет фоновое обновление
+    private final Set<Object> refreshing = ConcurrentHashMap.newKeySet();
+    // Задача выполняется с SecurityContext вызывающего запроса (в нем и токен для Feign),
+    // после выполнения контекст потока пула очищается
+    private final ExecutorService refreshExecutor = new DelegatingSecurityContextExecutorService(
+            Executors.newFixedThreadPool(2, new CustomizableThreadFactory("account-lookup-refresh-")));
+
+
+    public AccountLookupServiceImpl(FriendServiceClient friendServiceClient,
+                                    AccountServiceClient accountServiceClient,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${account-lookup.refresh-after:30s}") Duration refreshAfter,
+                                    @Value("${account-lookup.expire-after:10m}") Duration expireAfter,
+                                    @Value("${account-lookup.maximum-size:10000}") long maximumSize) {
+        this.friendServiceClient = friendServiceClient;
+        this.accountServiceClient = accountServiceClient;
+        this.refreshAfterNanos = refreshAfter.toNanos();
+
+        this.friendsCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfter)
+                .recordStats()
+                .build();
+
+        this.authorsCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfter)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, friendsCache, "friends_ids");
+        CaffeineCacheMetrics.monitor(meterRegistry, authorsCache, "author_ids");
+    }
+
+
+    private record CachedIds(List<UUID> ids, long loadedAt) {
+    }
+
+
+    @Override
+    public List<UUID> getFriendsIds(UUID accountId) {
+        return lookup(friendsCache, accountId, () -> fetchFriendsIds(accountId));
+    }
+
+
+    @Override
+    public List<UUID> getAuthorIds(String author) {
+        return lookup(authorsCache, author.trim().toLowerCase(Locale.ROOT), () -> fetchAuthorIds(author));
+    }
+
+
+    @Override
+    public void evictAll() {
+        friendsCache.invalidateAll();
+        authorsCache.invalidateAll();
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+
+    private <K> List<UUID> lookup(Cache<K, CachedIds> cache, K key, Supplier<List<UUID>> loader) {
+
+        // Промах — синхронная загрузка, параллельные запросы по тому же ключу ждут один вызов
+        CachedIds cached = cache.get(key, k -> load(loader));
+
+        if (System.nanoTime() - cached.loadedAt() > refreshAfterNanos) {
+            refreshAsync(cache, key, loader);
+        }
+
+        return cached.ids();
+    }
+
+
+    private <K> void refreshAsync(Cache<K, CachedIds> cache, K key, Supplier<List<UUID>> loader) {
+
+        if (!refreshing.add(key)) {
+            return;
+        }
+
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    cache.put(key, load(loader));
+                } catch (RuntimeException e) {
+                    log.warn("Background refresh failed for key {}, keeping stale value: {}", key, e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+        }
+    }
+
+
+    private static CachedIds load(Supplier<List<UUID>> loader) {
+        return new CachedIds(List.copyOf(loader.get()), System.nanoTime());
+    }
+
+
+    private List<UUID> fetchFriendsIds(UUID accountId) {
+        try {
+            return friendServiceClient.getFriendsIds();
+        } catch (FeignException e) {
+            log.error("Error fetching friends ids by accountId: {}", accountId);
+            throw new CustomFreignException(MessageFormat.format("Error fetching friends by accountId: {0}", accountId));
+        }
+    }
+
+
+    private List<UUID> fetchAuthorIds(String author) {
+        try {
+            return accountServiceClient.searchAccount(author).getContent().stream().map(AccountDto::getId).toList();
+        } catch (FeignException e) {
+            throw new CustomFreignException(MessageFormat.format("Error fetching authorId by name: {0}", author));
+        }
+    }
+}
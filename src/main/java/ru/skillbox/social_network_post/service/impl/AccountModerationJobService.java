@@ -0,0 +1,226 @@
+package ru.skillbox.social_network_post.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skillbox.social_network_post.entity.AccountModerationJob;
+import ru.skillbox.social_network_post.entity.ModerationAction;
+import ru.skillbox.social_network_post.entity.ModerationStage;
+import ru.skillbox.social_network_post.repository.AccountModerationJobRepository;
+import ru.skillbox.social_network_post.repository.CommentRepository;
+import ru.skillbox.social_network_post.repository.PostRepository;
+import ru.skillbox.social_network_post.repository.ReactionRepository;
+import ru.skillbox.social_network_post.service.PostCacheService;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Каскад блокировки/удаления аккаунта на комментарии и реакции.
+ * Вместо одного UPDATE по всем строкам автора задача выполняется чанками по chunk-size строк,
+ * каждый чанк — отдельная короткая транзакция, прогресс (этап и число строк) хранится в account_moderation_jobs.
+ * Реакции удаленного аккаунта удаляются, заблокированного — помечаются is_blocked и перестают учитываться
+ * в счетчиках. Счетчики затронутых постов и комментариев пересчитываются
+ * по фактическим данным в том же чанке.
+ */
+@Slf4j
+@Service
+public class AccountModerationJobService {
+
+    private final AccountModerationJobRepository jobRepository;
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final ReactionRepository reactionRepository;
+    private final ReactionCountReconciliationService reactionCountReconciliationService;
+    private final ReactionCounterBuffer reactionCounterBuffer;
+    private final PostCacheService postCacheService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int maxChunksPerRun;
+    private final Duration retention;
+
+
+    public AccountModerationJobService(AccountModerationJobRepository jobRepository,
+                                       PostRepository postRepository,
+                                       CommentRepository commentRepository,
+                                       ReactionRepository reactionRepository,
+                                       ReactionCountReconciliationService reactionCountReconciliationService,
+                                       ReactionCounterBuffer reactionCounterBuffer,
+                                       PostCacheService postCacheService,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${account-moderation.chunk-size:500}") int chunkSize,
+                                       @Value("${account-moderation.max-chunks-per-run:100}") int maxChunksPerRun,
+                                       @Value("${account-moderation.retention:7d}") Duration retention) {
+        this.jobRepository = jobRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.reactionRepository = reactionRepository;
+        this.reactionCountReconciliationService = reactionCountReconciliationService;
+        this.reactionCounterBuffer = reactionCounterBuffer;
+        this.postCacheService = postCacheService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.maxChunksPerRun = maxChunksPerRun;
+        this.retention = retention;
+    }
+
+
+    @Transactional
+    public void enqueue(Collection<UUID> accountIds, ModerationAction action) {
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+
+        jobRepository.saveAll(accountIds.stream()
+                .map(accountId -> AccountModerationJob.builder()
+                        .accountId(accountId)
+                        .action(action)
+                        .createdAt(now)
+                        .build())
+                .toList());
+
+        log.info("Enqueued {} moderation jobs for {} accounts", action, accountIds.size());
+    }
+
+
+    @Scheduled(fixedDelayString = "${account-moderation.poll-delay-ms:1000}")
+    public void processPendingJobs() {
+
+        for (int i = 0; i < maxChunksPerRun; i++) {
+            try {
+                if (!Boolean.TRUE.equals(transactionTemplate.execute(status -> processNextChunk()))) {
+                    break;
+                }
+            } catch (RuntimeException e) {
+                // Чанк откатился целиком, задача останется на том же этапе и повторится в следующий запуск
+                log.error("Account moderation chunk failed", e);
+                break;
+            }
+        }
+    }
+
+
+    // Очистка истории отдельно от опроса очереди: запрос по всей таблице не нужен каждую секунду
+    @Scheduled(cron = "${account-moderation.cleanup-cron:0 0 4 * * *}")
+    public void deleteFinishedJobs() {
+        int deleted = jobRepository.deleteFinishedBefore(LocalDateTime.now(ZoneOffset.UTC).minus(retention));
+        log.info("Deleted {} finished moderation jobs", deleted);
+    }
+
+
+    private boolean processNextChunk() {
+
+        Optional<AccountModerationJob> pending = jobRepository.lockNextPending();
+
+        if (pending.isEmpty()) {
+            return false;
+        }
+
+        AccountModerationJob job = pending.get();
+
+        int processed = switch (job.getStage()) {
+            case COMMENTS -> processCommentsChunk(job);
+            case REACTIONS -> processReactionsChunk(job);
+            case DONE -> 0;
+        };
+
+        job.setProcessedRows(job.getProcessedRows() + processed);
+        job.setUpdatedAt(LocalDateTime.now(ZoneOffset.UTC));
+
+        // Неполный чанк — строки этапа закончились
+        if (processed < chunkSize) {
+            job.setStage(nextStage(job));
+
+            if (job.getStage() == ModerationStage.DONE) {
+                log.info("Moderation job {} ({} {}) finished, rows processed: {}",
+                        job.getId(), job.getAction(), job.getAccountId(), job.getProcessedRows());
+            }
+        }
+
+        return true;
+    }
+
+
+    private int processCommentsChunk(AccountModerationJob job) {
+
+        boolean delete = job.getAction() == ModerationAction.DELETE;
+
+        List<UUID> commentIds = delete
+                ? commentRepository.lockNotDeletedChunkByAuthor(job.getAccountId(), chunkSize)
+                : commentRepository.lockNotBlockedChunkByAuthor(job.getAccountId(), chunkSize);
+
+        if (commentIds.isEmpty()) {
+            return 0;
+        }
+
+        List<UUID> postIds = commentRepository.findPostIdsByIds(commentIds);
+
+        if (delete) {
+            List<UUID> parentIds = commentRepository.findParentIdsByIds(commentIds);
+
+            commentRepository.markAsDeletedByIds(commentIds);
+            postRepository.recalculateCommentsCount(postIds);
+
+            if (!parentIds.isEmpty()) {
+                commentRepository.recalculateCommentsAmount(parentIds);
+            }
+        } else {
+            commentRepository.updateBlockedStatusByIds(commentIds, true);
+        }
+
+        postIds.forEach(postCacheService::evictPost);
+
+        return commentIds.size();
+    }
+
+
+    private int processReactionsChunk(AccountModerationJob job) {
+
+        List<UUID> reactionIds = job.getAction() == ModerationAction.DELETE
+                ? reactionRepository.lockChunkByAuthor(job.getAccountId(), chunkSize)
+                : reactionRepository.lockNotBlockedChunkByAuthor(job.getAccountId(), chunkSize);
+
+        if (reactionIds.isEmpty()) {
+            return 0;
+        }
+
+        List<UUID> postIds = reactionRepository.findPostIdsByIds(reactionIds);
+        List<UUID> commentIds = reactionRepository.findCommentIdsByIds(reactionIds);
+
+        if (job.getAction() == ModerationAction.DELETE) {
+            reactionRepository.deleteAllByIdInBatch(reactionIds);
+        } else {
+            reactionRepository.updateBlockedStatusByIds(reactionIds, true);
+        }
+
+        // Счетчики пересчитываем по учитываемым реакциям, а не вычитаем: повтор чанка после сбоя их не испортит.
+        // Несвернутые дельты пересчет вычитает, поэтому сворачивание до коммита чанка приостанавливается
+        reactionCounterBuffer.lockCounters();
+        postRepository.recalculateReactionsCount(postIds);
+
+        if (!commentIds.isEmpty()) {
+            commentRepository.recalculateLikeAmount(commentIds);
+        }
+
+        // Пересборка гистограммы заодно сбрасывает кэш постов
+        reactionCountReconciliationService.rebuild(postIds);
+
+        return reactionIds.size();
+    }
+
+
+    private static ModerationStage nextStage(AccountModerationJob job) {
+        if (job.getStage() == ModerationStage.COMMENTS) {
+            return ModerationStage.REACTIONS;
+        }
+
+        return ModerationStage.DONE;
+    }
+}
@@ -5,8 +5,11 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -19,18 +22,27 @@ import ru.skillbox.social_network_post.exception.IdMismatchException;
 import ru.skillbox.social_network_post.mapper.CommentMapperFactory;
 import ru.skillbox.social_network_post.repository.CommentRepository;
 import ru.skillbox.social_network_post.repository.PostRepository;
+import ru.skillbox.social_network_post.repository.projection.CommentView;
 import ru.skillbox.social_network_post.repository.specifiaction.CommentSpecification;
 import ru.skillbox.social_network_post.security.SecurityUtils;
 import ru.skillbox.social_network_post.service.CommentService;
 import ru.skillbox.social_network_post.service.KafkaService;
+import ru.skillbox.social_network_post.service.PostCacheService;
 import ru.skillbox.social_network_post.service.ReactionService;
+import ru.skillbox.social_network_post.utils.CursorUtils;
 import ru.skillbox.social_network_post.utils.EntityCheckUtils;
 
 import java.text.MessageFormat;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 
 @Slf4j
@@ -38,10 +50,18 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class CommentServiceImpl implements CommentService {
 
+    private static final Sort SLICE_SORT = Sort.by(Sort.Order.asc("time"), Sort.Order.asc("id"));
+
+    private static final int MAX_TOP_REPLIES = 20;
+
+    // Кэшируется только первая страница по умолчанию (@PageableDefault контроллера): одна запись на пост
+    private static final Pageable CACHED_FIRST_PAGE = PageRequest.of(0, 10, Sort.by(Sort.Direction.ASC, "id"));
+
     private final ReactionService reactionService;
     private final KafkaService kafkaService;
     private final CommentRepository commentRepository;
     private final PostRepository postRepository;
+    private final PostCacheService postCacheService;
 
 
     @LogExecutionTime
@@ -52,18 +72,28 @@ public class CommentServiceImpl implements CommentService {
         commentSearchDto.setPostId(postId);
         commentSearchDto.setCommentType(CommentType.POST);
 
-        // Формируем спецификацию для поиска
-        Specification<Comment> spec = CommentSpecification.withFilters(commentSearchDto);
+        // Первая страница по умолчанию без фильтров — самый частый запрос, отдаем её из кэша
+        PageCommentDto pageCommentDto = isDefaultFirstPageWithoutFilters(commentSearchDto, pageable)
+                ? copyOf(postCacheService.getFirstCommentPage(postId, () -> findComments(commentSearchDto, pageable)))
+                : findComments(commentSearchDto, pageable);
 
-        log.warn("Service getByPostId spec: {}", spec);
+        fillMyLikes(postId, pageCommentDto);
 
-        // Запрашиваем комменты из репозитория
-        Page<Comment> comments = commentRepository.findAll(spec, pageable);
+        return pageCommentDto;
+    }
+
+
+    @LogExecutionTime
+    @Override
+    @Transactional(readOnly = true)
+    public PageCommentDto getSubcomments(UUID postId, UUID commentId, Pageable pageable) {
+        EntityCheckUtils.checkPostPresence(postRepository, postId);
+        EntityCheckUtils.checkCommentPresence(commentRepository, commentId);
+        Page<CommentView> subcomments = commentRepository.findViewsByParentCommentIdAndPostId(commentId, postId, pageable);
 
-        PageCommentDto pageCommentDto = CommentMapperFactory.toPageCommentDto(comments);
+        PageCommentDto pageCommentDto = CommentMapperFactory.toPageCommentDtoFromViews(subcomments);
 
-        pageCommentDto.getContent().forEach(commentDto ->
-                commentDto.setMyLike(reactionService.getMyReactionToComment(postId, commentDto.getId(), SecurityUtils.getAccountId())));
+        fillMyLikes(postId, pageCommentDto);
 
         return pageCommentDto;
     }
@@ -72,17 +102,62 @@ public class CommentServiceImpl implements CommentService {
     @LogExecutionTime
     @Override
     @Transactional(readOnly = true)
-    public PageCommentDto getSubcomments(UUID postId, UUID commentId, Pageable pageable) {
+    public SliceCommentDto getSliceByPostId(UUID postId, CommentSearchDto commentSearchDto, String cursor, int size) {
+
+        commentSearchDto.setPostId(postId);
+        commentSearchDto.setCommentType(CommentType.POST);
+
+        return findSlice(postId, CommentSpecification.withFilters(commentSearchDto), cursor, size);
+    }
+
+
+    @LogExecutionTime
+    @Override
+    @Transactional(readOnly = true)
+    public SliceCommentDto getSubcommentsSlice(UUID postId, UUID commentId, String cursor, int size) {
+
         EntityCheckUtils.checkPostPresence(postRepository, postId);
         EntityCheckUtils.checkCommentPresence(commentRepository, commentId);
-        Page<Comment> subcomments = commentRepository.findByParentCommentIdAndPostId(commentId, postId, pageable);
 
-        PageCommentDto pageCommentDto = CommentMapperFactory.toPageCommentDto(subcomments);
+        return findSlice(postId, CommentSpecification.byParent(postId, commentId), cursor, size);
+    }
 
-        pageCommentDto.getContent().forEach(commentDto ->
-                commentDto.setMyLike(reactionService.getMyReactionToComment(postId, commentDto.getId(), SecurityUtils.getAccountId())));
 
-        return pageCommentDto;
+    // Все поддерево комментария одним range scan по индексу thread_path, ближние уровни первыми
+    @LogExecutionTime
+    @Override
+    @Transactional(readOnly = true)
+    public List<CommentDto> getThread(UUID postId, UUID commentId, int size) {
+
+        Comment root = EntityCheckUtils.checkCommentAndPostPresence(commentRepository, postRepository, postId, commentId).getRight();
+
+        List<CommentView> descendants = commentRepository.findSubtree(postId, childPathOf(root) + "%",
+                Limit.of(CursorUtils.normalizeSize(size)));
+
+        List<CommentDto> commentDtos = CommentMapperFactory.toCommentDtoListFromViews(descendants);
+
+        fillMyLikes(postId, commentDtos);
+
+        return commentDtos;
+    }
+
+
+    // Первые limit ответов на каждый комментарий страницы одним запросом
+    @LogExecutionTime
+    @Override
+    @Transactional(readOnly = true)
+    public Map<UUID, List<CommentDto>> getTopReplies(UUID postId, Collection<UUID> commentIds, int limit) {
+
+        if (commentIds.isEmpty()) {
+            return Map.of();
+        }
+
+        List<CommentDto> replies = CommentMapperFactory.toCommentDtoList(
+                commentRepository.findTopReplies(postId, commentIds, Math.max(1, Math.min(limit, MAX_TOP_REPLIES))));
+
+        fillMyLikes(postId, replies);
+
+        return replies.stream().collect(Collectors.groupingBy(CommentDto::getParentId, LinkedHashMap::new, Collectors.toList()));
     }
 
 
@@ -102,10 +177,16 @@ public class CommentServiceImpl implements CommentService {
         UUID parentId = commentDto.getParentId();
 
         if (parentId != null) {
-            comment.setParentComment(EntityCheckUtils.checkCommentPresence(commentRepository, parentId));
+            Comment parent = EntityCheckUtils.checkCommentPresenceForUpdate(commentRepository, parentId);
+            checkDepth(parent.getDepth() + 1, parentId);
+            comment.setParentComment(parent);
+            comment.setThreadPath(childPathOf(parent));
+            comment.setDepth(parent.getDepth() + 1);
             comment.setCommentType(CommentType.COMMENT);
             commentRepository.incrementCommentsAmount(parentId);
         } else {
+            comment.setThreadPath(Comment.ROOT_PATH);
+            comment.setDepth(0);
             comment.setCommentType(CommentType.POST);
 
         }
@@ -120,7 +201,8 @@ public class CommentServiceImpl implements CommentService {
 
         comment.setAuthorId(accountId);
 
-        post.setCommentsCount(post.getCommentsCount() + 1);
+        // Счетчик обновляем запросом, чтобы не загружать сам пост
+        postRepository.incrementCommentsCount(postId);
 
         Comment savedComment = commentRepository.save(comment);
 
@@ -135,6 +217,8 @@ public class CommentServiceImpl implements CommentService {
 
 
         kafkaService.newCommentEvent(commentNotificationDto);
+
+        postCacheService.evictPost(postId);
     }
 
 
@@ -172,6 +256,8 @@ public class CommentServiceImpl implements CommentService {
         comment.setTimeChanged(LocalDateTime.now(ZoneOffset.UTC));
 
         commentRepository.save(comment);
+
+        postCacheService.evictComments(postId);
     }
 
 
@@ -180,17 +266,93 @@ public class CommentServiceImpl implements CommentService {
     @Transactional
     public void delete(UUID postId, UUID commentId) {
 
-        Pair<Post, Comment> postCommentPair = EntityCheckUtils.checkCommentAndPostPresence(commentRepository, postRepository, postId, commentId);
-        Comment comment = postCommentPair.getRight();
+        EntityCheckUtils.checkCommentAndPostPresence(commentRepository, postRepository, postId, commentId);
 
-        // Помечаем комментарии как удаленные
-        commentRepository.markCommentAsDeletedByPostIdAndCommentId(postId, commentId);
+        // Комментарий, ответы любой глубины и счетчики обновляются одним запросом
+        long deleted = commentRepository.softDeleteSubtree(postId, commentId);
+        log.info("Deleted comment {} with replies: {} rows", commentId, deleted);
 
-        if (comment.getCommentsCount() > 0) {
-            commentRepository.markAllAsDeletedByParentComment(commentId);
-        }
+        postCacheService.evictPost(postId);
+    }
+
+
+    private PageCommentDto findComments(CommentSearchDto commentSearchDto, Pageable pageable) {
+
+        // Формируем спецификацию для поиска
+        Specification<Comment> spec = CommentSpecification.withFilters(commentSearchDto);
+
+        log.warn("Service getByPostId spec: {}", spec);
+
+        // Запрашиваем комменты из репозитория
+        Page<Comment> comments = commentRepository.findAll(spec, pageable);
+
+        return CommentMapperFactory.toPageCommentDto(comments);
+    }
+
+
+    // Keyset-срез по (time, id) без count-запроса: берем на одну запись больше, чтобы узнать о продолжении
+    private SliceCommentDto findSlice(UUID postId, Specification<Comment> filter, String cursor, int requestedSize) {
+
+        CursorUtils.Cursor after = CursorUtils.decode(cursor);
+        int size = CursorUtils.normalizeSize(requestedSize);
+
+        List<Comment> comments = commentRepository.findBy(filter.and(CommentSpecification.afterCursor(after)), query -> query
+                .sortBy(SLICE_SORT)
+                .limit(size + 1)
+                .all());
+
+        boolean hasNext = comments.size() > size;
+        List<Comment> content = hasNext ? comments.subList(0, size) : comments;
+
+        List<CommentDto> commentDtos = CommentMapperFactory.toCommentDtoList(content);
+
+        fillMyLikes(postId, commentDtos);
+
+        Comment last = content.isEmpty() ? null : content.get(content.size() - 1);
+
+        return SliceCommentDto.builder()
+                .content(commentDtos)
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? CursorUtils.encode(last.getTime(), last.getId()) : null)
+                .build();
+    }
 
-        postRepository.decrementCommentCount(postId, comment.getCommentsCount() + 1);
+
+    private void fillMyLikes(UUID postId, PageCommentDto pageCommentDto) {
+        fillMyLikes(postId, pageCommentDto.getContent());
+    }
+
+
+    // Лайки текущего пользователя для всей страницы одним запросом
+    private void fillMyLikes(UUID postId, List<CommentDto> commentDtos) {
+
+        List<UUID> commentIds = commentDtos.stream().map(CommentDto::getId).toList();
+
+        Set<UUID> likedIds = reactionService.getMyLikedComments(postId, commentIds, SecurityUtils.getAccountId());
+
+        commentDtos.forEach(commentDto -> commentDto.setMyLike(likedIds.contains(commentDto.getId())));
+    }
+
+
+    private static boolean isDefaultFirstPageWithoutFilters(CommentSearchDto commentSearchDto, Pageable pageable) {
+        return CACHED_FIRST_PAGE.equals(pageable)
+                && commentSearchDto.getParentCommentId() == null
+                && commentSearchDto.getLikeAmount() == null
+                && commentSearchDto.getCommentsCount() == null
+                && commentSearchDto.getIsBlocked() == null
+                && commentSearchDto.getIsDeleted() == null
+                && commentSearchDto.getMyLike() == null
+                && commentSearchDto.getCommentText() == null
+                && commentSearchDto.getImagePath() == null;
+    }
+
+
+    // Копия страницы из кэша, чтобы myLike текущего пользователя не попал в общий экземпляр
+    private static PageCommentDto copyOf(PageCommentDto cached) {
+        return cached.toBuilder()
+                .content(cached.getContent().stream().map(commentDto -> commentDto.toBuilder().build()).toList())
+                .build();
     }
 
     private void updateParentComment(CommentDto commentDto, Comment comment) {
@@ -198,11 +360,47 @@ public class CommentServiceImpl implements CommentService {
         UUID existingParentId = comment.getParentComment() != null ? comment.getParentComment().getId() : null;
 
         if (!Objects.equals(newParentId, existingParentId)) {
+            String oldSubtreePrefix = childPathOf(comment);
+            int oldDepth = comment.getDepth();
+
             if (newParentId != null) {
-                comment.setParentComment(EntityCheckUtils.checkCommentPresence(commentRepository, newParentId));
+                Comment parent = EntityCheckUtils.checkCommentPresenceForUpdate(commentRepository, newParentId);
+
+                // Перенос под себя или своего потомка создал бы цикл, а movePaths переписал бы путь самого комментария
+                if (newParentId.equals(comment.getId()) || parent.getThreadPath().startsWith(oldSubtreePrefix)) {
+                    throw new ValidationException(MessageFormat.format(
+                            "Comment {0} cannot be moved under itself or its reply {1}", comment.getId(), newParentId));
+                }
+
+                // Самый глубокий потомок не должен выйти за предел вложенности на новом месте
+                int subtreeHeight = Math.max(0, commentRepository.findMaxDepthByPathPrefix(oldSubtreePrefix + "%") - oldDepth);
+                checkDepth(parent.getDepth() + 1 + subtreeHeight, newParentId);
+
+                comment.setParentComment(parent);
+                comment.setThreadPath(childPathOf(parent));
+                comment.setDepth(parent.getDepth() + 1);
             } else {
                 comment.setParentComment(null);
+                comment.setThreadPath(Comment.ROOT_PATH);
+                comment.setDepth(0);
             }
+
+            // Переносим путь всего поддерева под новое место
+            commentRepository.movePaths(oldSubtreePrefix, childPathOf(comment), comment.getDepth() - oldDepth);
         }
     }
+
+
+    private static void checkDepth(int depth, UUID parentId) {
+        if (depth > Comment.MAX_DEPTH) {
+            throw new ValidationException(MessageFormat.format(
+                    "Reply under comment {0} exceeds max thread depth {1}", parentId, Comment.MAX_DEPTH));
+        }
+    }
+
+
+    // Префикс путей всех потомков комментария
+    private static String childPathOf(Comment comment) {
+        return comment.getThreadPath() + comment.getId() + "/";
+    }
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+package ru.skillbox.social_network_post.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import ru.skillbox.social_network_post.repository.JobLockRepository;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Блокировка фоновой задачи на уровне кластера (строка в job_locks с арендой до locked_until).
+ * Экземпляр, не получивший блокировку, пропускает запуск. Аренда ограничивает время,
+ * на которое упавший владелец может задержать задачу; долгие задачи продлевают ее повторным tryLock.
+ */
+@Slf4j
+@Service
+public class JobLockService {
+
+    private final JobLockRepository jobLockRepository;
+
+    // Владелец блокировок — этот экземпляр сервиса
+    private final String owner = UUID.randomUUID().toString();
+
+
+    public JobLockService(JobLockRepository jobLockRepository) {
+        this.jobLockRepository = jobLockRepository;
+    }
+
+
+    // Захват свободной или продление своей блокировки
+    public boolean tryLock(String name, Duration lease) {
+        return jobLockRepository.tryLock(name, lease.toMillis() / 1000.0, owner) > 0;
+    }
+
+
+    public void unlock(String name) {
+        jobLockRepository.unlock(name, owner);
+    }
+
+
+    // false — задачу сейчас выполняет другой экземпляр
+    public boolean runExclusively(String name, Duration lease, Runnable task) {
+        if (!tryLock(name, lease)) {
+            log.debug("Job {} is locked by another instance, skipping", name);
+            return false;
+        }
+
+        try {
+            task.run();
+            return true;
+        } finally {
+            unlock(name);
+        }
+    }
+}
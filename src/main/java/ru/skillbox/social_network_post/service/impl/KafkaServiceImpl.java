@@ -1,20 +1,32 @@
 package ru.skillbox.social_network_post.service.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import ru.skillbox.social_network_post.config.KafkaConfig;
 import ru.skillbox.social_network_post.dto.AccountEventDto;
 import ru.skillbox.social_network_post.dto.CommentNotificationDto;
 import ru.skillbox.social_network_post.dto.PostNotificationDto;
+import ru.skillbox.social_network_post.entity.OutboxEvent;
+import ru.skillbox.social_network_post.entity.OutboxEventType;
+import ru.skillbox.social_network_post.repository.OutboxEventRepository;
 import ru.skillbox.social_network_post.service.KafkaService;
 import ru.skillbox.social_network_post.dto.ReactionNotificationDto;
 import ru.skillbox.social_network_post.service.PostService;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -31,59 +43,98 @@ public class KafkaServiceImpl implements KafkaService {
 
     private final ObjectMapper objectMapper;
 
-    private final KafkaTemplate<Long, Object> kafkaTemplate;
+    private final OutboxEventRepository outboxEventRepository;
 
     private final PostService postService;
 
 
     @Override
+    @Transactional
     public void newPostEvent(PostNotificationDto postNotificationDto) {
-        kafkaTemplate.send(newPostTopic, postNotificationDto);
-        log.info("Sent new post -> '{}'", postNotificationDto);
+        saveToOutbox(newPostTopic, OutboxEventType.NEW_POST, postNotificationDto.getPostId(), postNotificationDto);
+        log.info("Queued new post -> '{}'", postNotificationDto);
     }
 
 
     @Override
+    @Transactional
     public void newCommentEvent(CommentNotificationDto commentNotificationDto) {
-        kafkaTemplate.send(newCommentTopic, commentNotificationDto);
-        log.info("Sent new comment -> '{}'", commentNotificationDto);
+        saveToOutbox(newCommentTopic, OutboxEventType.NEW_COMMENT, commentNotificationDto.getPostId(), commentNotificationDto);
+        log.info("Queued new comment -> '{}'", commentNotificationDto);
     }
 
 
     @Override
+    @Transactional
     public void newLikeEvent(ReactionNotificationDto reactionNotificationDto) {
-        kafkaTemplate.send(newLikeTopic, reactionNotificationDto);
-        log.info("Sent new like -> '{}'", reactionNotificationDto);
+        saveToOutbox(newLikeTopic, OutboxEventType.NEW_LIKE, reactionNotificationDto.getPostId(), reactionNotificationDto);
+        log.info("Queued new like -> '{}'", reactionNotificationDto);
     }
 
 
-    @Transactional
-    @KafkaListener(topics = "${spring.kafka.blocked-account-topic}", groupId = "${spring.kafka.consumer.group-id}")
-    public void listenBlockedAccount(String message) {
-        processAccountEvent(message, "Blocked");
+    // Событие сохраняется в транзакции вызывающего метода и уходит в Kafka только после ее коммита (см. OutboxRelayService)
+    private void saveToOutbox(String topic, OutboxEventType eventType, UUID aggregateId, Object payload) {
+        try {
+            outboxEventRepository.save(OutboxEvent.builder()
+                    .topic(topic)
+                    .eventType(eventType)
+                    .aggregateId(aggregateId)
+                    .payload(objectMapper.writeValueAsString(payload))
+                    .createdAt(LocalDateTime.now(ZoneOffset.UTC))
+                    .build());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize " + eventType + " event", e);
+        }
     }
 
 
-    @Transactional
-    @KafkaListener(topics = "${spring.kafka.deleted-account-topic}", groupId = "${spring.kafka.consumer.group-id}")
-    public void listenDeletedAccount(String message) {
-        processAccountEvent(message, "Deleted");
+    @KafkaListener(topics = "${spring.kafka.blocked-account-topic}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchKafkaListenerContainerFactory")
+    public void listenBlockedAccount(List<String> messages, Acknowledgment acknowledgment) {
+        postService.updateBlockedStatusForAccounts(parseAccountIds(messages, "Blocked"));
+        acknowledgment.acknowledge();
     }
 
 
-    private void processAccountEvent(String message, String accountStatus) {
-        try {
-            AccountEventDto accountEventDto = objectMapper.readValue(message, AccountEventDto.class);
-            log.info("Account {}: {}", accountStatus, accountEventDto.accountId());
+    @KafkaListener(topics = "${spring.kafka.deleted-account-topic}", groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "batchKafkaListenerContainerFactory")
+    public void listenDeletedAccount(List<String> messages, Acknowledgment acknowledgment) {
+        postService.updateDeletedStatusForAccounts(parseAccountIds(messages, "Deleted"));
+        acknowledgment.acknowledge();
+    }
 
-            if (accountStatus.equals("Blocked")) {
-                postService.updateBlockedStatusForAccount(accountEventDto.accountId());
-            } else if (accountStatus.equals("Deleted")) {
-                postService.updateDeletedStatusForAccount(accountEventDto.accountId());
-            }
 
-        } catch (Exception e) {
-            log.error("Error processing {} account message: {}", accountStatus, message, e);
+    // Пачки, не обработанные в основном топике, повторяются здесь поштучно (см. KafkaConfig)
+    @KafkaListener(topics = "${spring.kafka.blocked-account-topic}" + KafkaConfig.RETRY_TOPIC_SUFFIX,
+            groupId = "${spring.kafka.consumer.group-id}")
+    public void retryBlockedAccount(String message) {
+        postService.updateBlockedStatusForAccounts(parseAccountIds(List.of(message), "Blocked"));
+    }
+
+
+    @KafkaListener(topics = "${spring.kafka.deleted-account-topic}" + KafkaConfig.RETRY_TOPIC_SUFFIX,
+            groupId = "${spring.kafka.consumer.group-id}")
+    public void retryDeletedAccount(String message) {
+        postService.updateDeletedStatusForAccounts(parseAccountIds(List.of(message), "Deleted"));
+    }
+
+
+    // Весь poll схлопывается в один набор id; нечитаемые сообщения пропускаются, чтобы не блокировать пачку
+    private Set<UUID> parseAccountIds(List<String> messages, String accountStatus) {
+        Set<UUID> accountIds = new LinkedHashSet<>();
+
+        for (String message : messages) {
+            try {
+                AccountEventDto accountEventDto = objectMapper.readValue(message, AccountEventDto.class);
+                if (accountEventDto.accountId() != null) {
+                    accountIds.add(accountEventDto.accountId());
+                }
+            } catch (Exception e) {
+                log.error("Error processing {} account message: {}", accountStatus, message, e);
+            }
         }
+
+        log.info("Account {}: {} accounts in batch of {} messages", accountStatus, accountIds.size(), messages.size());
+        return accountIds;
     }
-}
\ No newline at end of file
+}
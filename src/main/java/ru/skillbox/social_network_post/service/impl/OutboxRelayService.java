@@ -0,0 +1,195 @@
+package ru.skillbox.social_network_post.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.skillbox.social_network_post.entity.OutboxEvent;
+import ru.skillbox.social_network_post.repository.OutboxEventRepository;
+
+import java.text.MessageFormat;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Фоновая отправка событий из outbox в Kafka.
+ * Outbox разбирает один экземпляр сервиса под блокировкой job_locks, пачка читается без блокировок строк.
+ * События одного поста отправляются строго по очереди: следующее — только после подтверждения предыдущего,
+ * при первой ошибке остальные события поста остаются в outbox до следующего запуска. Разные посты
+ * отправляются параллельно. Удаляются ровно подтвержденные события (at-least-once, порядок внутри поста сохраняется).
+ * Раунд ограничен send-timeout: новые отправки начинаются, только пока продюсер успеет завершить их
+ * (max.block.ms + delivery.timeout.ms) до конца раунда, поэтому неподтвержденное событие действительно не ушло
+ * и не будет доставлено позже повторной отправки. Аренда блокировки заметно длиннее раунда и продлевается перед каждым.
+ */
+@Slf4j
+@Service
+public class OutboxRelayService {
+
+    private static final String RELAY_LOCK = "outbox-relay";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final JobLockService jobLockService;
+    private final int batchSize;
+    private final Duration sendTimeout;
+    private final Duration producerTimeout;
+    private final Duration lockLease;
+
+
+    public OutboxRelayService(OutboxEventRepository outboxEventRepository,
+                              KafkaTemplate<String, Object> kafkaTemplate,
+                              ObjectMapper objectMapper,
+                              JobLockService jobLockService,
+                              @Value("${outbox.batch-size:200}") int batchSize,
+                              @Value("${outbox.send-timeout:10s}") Duration sendTimeout,
+                              @Value("${kafka-producer.max-block:2s}") Duration producerMaxBlock,
+                              @Value("${kafka-producer.delivery-timeout:5s}") Duration producerDeliveryTimeout,
+                              @Value("${outbox.lock-lease:1m}") Duration lockLease) {
+        // Худшее время от вызова send до завершения future: блокировка на метаданных плюс доставка с ретраями
+        Duration producerTimeout = producerMaxBlock.plus(producerDeliveryTimeout);
+
+        if (producerTimeout.compareTo(sendTimeout) >= 0) {
+            throw new IllegalStateException(MessageFormat.format(
+                    "outbox.send-timeout ({0}) must exceed kafka-producer max-block + delivery-timeout ({1})",
+                    sendTimeout, producerTimeout));
+        }
+        if (sendTimeout.multipliedBy(2).compareTo(lockLease) >= 0) {
+            throw new IllegalStateException(MessageFormat.format(
+                    "outbox.lock-lease ({0}) must be more than twice outbox.send-timeout ({1})", lockLease, sendTimeout));
+        }
+
+        this.outboxEventRepository = outboxEventRepository;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.jobLockService = jobLockService;
+        this.batchSize = batchSize;
+        this.sendTimeout = sendTimeout;
+        this.producerTimeout = producerTimeout;
+        this.lockLease = lockLease;
+    }
+
+
+    @Scheduled(fixedDelayString = "${outbox.relay-delay-ms:500}")
+    public void relay() {
+        jobLockService.runExclusively(RELAY_LOCK, lockLease, this::relayBatch);
+    }
+
+
+    private void relayBatch() {
+
+        List<OutboxEvent> batch = outboxEventRepository.findNextBatch(batchSize);
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // Очереди событий по постам в порядке id; событие без поста — отдельная очередь
+        Map<Object, Deque<OutboxEvent>> queues = new LinkedHashMap<>();
+
+        for (OutboxEvent event : batch) {
+            Object key = event.getAggregateId() != null ? event.getAggregateId() : event.getId();
+            queues.computeIfAbsent(key, k -> new ArrayDeque<>()).add(event);
+        }
+
+        List<Long> sentIds = new ArrayList<>(batch.size());
+
+        // Каждый раунд отправляет по одному очередному событию каждого поста и ждет подтверждений
+        while (!queues.isEmpty()) {
+
+            // Продлеваем аренду перед раундом; если ее перехватил другой экземпляр, отдаем ему остаток пачки
+            if (!jobLockService.tryLock(RELAY_LOCK, lockLease)) {
+                break;
+            }
+
+            Instant deadline = Instant.now().plus(sendTimeout);
+            Instant lastSendStart = deadline.minus(producerTimeout);
+
+            Map<Object, CompletableFuture<?>> futures = new LinkedHashMap<>();
+            queues.forEach((key, queue) -> {
+                // Отправка, начатая позже, могла бы завершиться уже после раунда — событие подождет следующего запуска
+                if (Instant.now().isBefore(lastSendStart)) {
+                    futures.put(key, send(queue.peek()));
+                } else {
+                    queue.clear();
+                }
+            });
+
+            futures.forEach((key, future) -> {
+                Deque<OutboxEvent> queue = queues.get(key);
+                OutboxEvent event = queue.peek();
+
+                if (awaitSent(event, future, deadline)) {
+                    sentIds.add(event.getId());
+                    queue.poll();
+                } else {
+                    // Событие поста не ушло — более поздние события этого поста не отправляем
+                    queue.clear();
+                }
+            });
+
+            queues.values().removeIf(Deque::isEmpty);
+        }
+
+        // Пачку мог перехватить другой экземпляр — тогда подтвержденные события удалит он после повторной отправки
+        if (!jobLockService.tryLock(RELAY_LOCK, lockLease)) {
+            log.warn("Outbox relay lease lost, {} sent events will be sent again by the new owner", sentIds.size());
+            return;
+        }
+
+        outboxEventRepository.deleteAllByIdInBatch(sentIds);
+        log.debug("Outbox relay: sent {} of {} events", sentIds.size(), batch.size());
+    }
+
+
+    private CompletableFuture<?> send(OutboxEvent event) {
+        Object payload;
+
+        try {
+            payload = objectMapper.readValue(event.getPayload(), event.getEventType().getPayloadClass());
+        } catch (JsonProcessingException e) {
+            // Битое событие не должно блокировать очередь — пропускаем его
+            log.error("Dropping unreadable outbox event {}: {}", event.getId(), event.getPayload(), e);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Ключ партиционирования — id поста, события одного поста читаются консьюмерами по порядку
+        String key = event.getAggregateId() != null ? event.getAggregateId().toString() : null;
+
+        try {
+            return kafkaTemplate.send(event.getTopic(), key, payload);
+        } catch (RuntimeException e) {
+            // Синхронная ошибка (метаданные, сериализация) — как неудачная отправка этого события
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+
+    private boolean awaitSent(OutboxEvent event, CompletableFuture<?> future, Instant deadline) {
+        try {
+            future.get(Math.max(0, Duration.between(Instant.now(), deadline).toMillis()), TimeUnit.MILLISECONDS);
+            return true;
+
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Failed to send outbox event {} to {}, will retry: {}", event.getId(), event.getTopic(), e.getMessage());
+            return false;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
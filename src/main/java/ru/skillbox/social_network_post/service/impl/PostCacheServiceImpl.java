@@ -0,0 +1,89 @@
+package ru.skillbox.social_network_post.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.skillbox.social_network_post.config.CacheConfig;
+import ru.skillbox.social_network_post.dto.PageCommentDto;
+import ru.skillbox.social_network_post.dto.PostDto;
+import ru.skillbox.social_network_post.service.PostCacheService;
+
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Read-through кэш постов и первых страниц комментариев.
+ * В кэше лежат только общие для всех пользователей данные, поля myReaction/myLike
+ * заполняются поверх копии. Инвалидация выполняется после коммита транзакции,
+ * чтобы параллельное чтение не положило в кэш незакоммиченное состояние.
+ */
+@Slf4j
+@Service
+public class PostCacheServiceImpl implements PostCacheService {
+
+    private final Cache postsCache;
+    private final Cache commentsCache;
+
+
+    public PostCacheServiceImpl(CacheManager cacheManager) {
+        this.postsCache = Objects.requireNonNull(cacheManager.getCache(CacheConfig.POSTS_CACHE));
+        this.commentsCache = Objects.requireNonNull(cacheManager.getCache(CacheConfig.COMMENTS_CACHE));
+    }
+
+
+    @Override
+    public PostDto getPost(UUID postId, Supplier<PostDto> loader) {
+        return postsCache.get(postId, loader::get);
+    }
+
+
+    @Override
+    public PageCommentDto getFirstCommentPage(UUID postId, Supplier<PageCommentDto> loader) {
+        return commentsCache.get(postId, loader::get);
+    }
+
+
+    @Override
+    public void evictPost(UUID postId) {
+        afterCommit(() -> {
+            postsCache.evict(postId);
+            commentsCache.evict(postId);
+            log.debug("Evicted post {} from cache", postId);
+        });
+    }
+
+
+    @Override
+    public void evictComments(UUID postId) {
+        afterCommit(() -> commentsCache.evict(postId));
+    }
+
+
+    @Override
+    public void evictAll() {
+        afterCommit(() -> {
+            postsCache.clear();
+            commentsCache.clear();
+            log.debug("Post caches cleared");
+        });
+    }
+
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
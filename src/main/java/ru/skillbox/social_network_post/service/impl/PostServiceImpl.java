@@ -1,32 +1,36 @@
 package ru.skillbox.social_network_post.service.impl;
 
-import feign.FeignException;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Size;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.skillbox.social_network_post.aspect.LogExecutionTime;
-import ru.skillbox.social_network_post.client.AccountServiceClient;
-import ru.skillbox.social_network_post.client.FriendServiceClient;
 import ru.skillbox.social_network_post.dto.*;
+import ru.skillbox.social_network_post.entity.ModerationAction;
 import ru.skillbox.social_network_post.entity.Post;
-import ru.skillbox.social_network_post.exception.CustomFreignException;
 import ru.skillbox.social_network_post.exception.EntityNotFoundException;
 import ru.skillbox.social_network_post.mapper.PostMapperFactory;
 import ru.skillbox.social_network_post.repository.CommentRepository;
 import ru.skillbox.social_network_post.repository.PostRepository;
+import ru.skillbox.social_network_post.repository.PostSearchVectorRepository;
+import ru.skillbox.social_network_post.repository.projection.PostIdView;
 import ru.skillbox.social_network_post.repository.specifiaction.PostSpecification;
 import ru.skillbox.social_network_post.security.SecurityUtils;
+import ru.skillbox.social_network_post.service.AccountLookupService;
 import ru.skillbox.social_network_post.service.KafkaService;
+import ru.skillbox.social_network_post.service.PostCacheService;
 import ru.skillbox.social_network_post.service.PostService;
 import ru.skillbox.social_network_post.service.ReactionService;
+import ru.skillbox.social_network_post.utils.CursorUtils;
 import ru.skillbox.social_network_post.utils.EntityCheckUtils;
 
 import java.text.MessageFormat;
@@ -41,47 +45,50 @@ import java.util.*;
 @Service
 public class PostServiceImpl implements PostService {
 
-    private final AccountServiceClient accountServiceClient;
-    private final FriendServiceClient friendServiceClient;
+    private final AccountLookupService accountLookupService;
     private final ReactionService reactionService;
     private final KafkaService kafkaService;
     private final PostRepository postRepository;
     private final CommentRepository commentRepository;
-
-    private UUID accountId;
-
-    public PostServiceImpl(AccountServiceClient accountServiceClient,
-                           FriendServiceClient friendServiceClient, @Lazy ReactionService reactionService, @Lazy KafkaService kafkaService,
-                           PostRepository postRepository, CommentRepository commentRepository) {
-        this.accountServiceClient = accountServiceClient;
-        this.friendServiceClient = friendServiceClient;
+    private final PostCacheService postCacheService;
+    private final AccountModerationJobService accountModerationJobService;
+    private final PostSearchVectorRepository postSearchVectorRepository;
+    private final int searchMaxResults;
+
+    private static final Sort FEED_SORT = Sort.by(Sort.Order.desc("publishDate"), Sort.Order.desc("id"));
+
+    public PostServiceImpl(AccountLookupService accountLookupService, @Lazy ReactionService reactionService, @Lazy KafkaService kafkaService,
+                           PostRepository postRepository, CommentRepository commentRepository, PostCacheService postCacheService,
+                           AccountModerationJobService accountModerationJobService,
+                           PostSearchVectorRepository postSearchVectorRepository,
+                           @Value("${post-search.max-results:1000}") int searchMaxResults) {
+        this.accountLookupService = accountLookupService;
         this.reactionService = reactionService;
         this.kafkaService = kafkaService;
         this.postRepository = postRepository;
         this.commentRepository = commentRepository;
+        this.postCacheService = postCacheService;
+        this.accountModerationJobService = accountModerationJobService;
+        this.postSearchVectorRepository = postSearchVectorRepository;
+        this.searchMaxResults = searchMaxResults;
     }
 
 
+    // Без транзакции: при попадании в кэш соединение с БД не берется
     @LogExecutionTime
     @Override
-    @Transactional(readOnly = true)
     public PostDto getById(UUID postId) {
-        Post post = postRepository.findById(postId)
-                .orElseThrow(() -> new EntityNotFoundException(
-                        MessageFormat.format("Post with id {0} not found", postId)
-                ));
 
-        PostDto postDto = PostMapperFactory.toPostDto(post);
+        // В кэше общий для всех снимок поста, персональные поля заполняем на копии
+        PostDto postDto = postCacheService.getPost(postId, () -> loadPost(postId)).toBuilder().build();
 
-        String myReaction = reactionService.getMyReaction(postDto.getId(), accountId);
+        String myReaction = reactionService.getMyReaction(postDto.getId(), SecurityUtils.getAccountId());
 
         if (myReaction != null) {
             postDto.setMyReaction(myReaction);
             postDto.setMyLike(true);
         }
 
-        postDto.setReactionType(reactionService.getReactionInfos(postDto.getId()));
-
         return postDto;
     }
 
@@ -89,7 +96,7 @@ public class PostServiceImpl implements PostService {
     @Override
     public PagePostDto getAll(@Valid PostSearchDto postSearchDto, Pageable pageable) {
 
-        accountId = SecurityUtils.getAccountId();
+        UUID accountId = SecurityUtils.getAccountId();
 
         processAccountIds(postSearchDto);
         processDateFilters(postSearchDto, accountId);
@@ -97,22 +104,61 @@ public class PostServiceImpl implements PostService {
 
         Specification<Post> spec = PostSpecification.withFilters(postSearchDto, accountId);
 
-        Page<Post> posts = postRepository.findAll(spec, pageable);
+        Page<Post> posts = hasSearchQuery(postSearchDto)
+                ? searchPage(spec, postSearchDto.getQuery(), pageable)
+                : postRepository.findAll(spec, pageable);
 
-        PagePostDto pagePostDto = PostMapperFactory.toPagePostDto(posts);
+        PagePostDto pagePostDto = PostMapperFactory.toPagePostDto(posts, loadTags(posts.getContent()));
 
-        pagePostDto.getContent().forEach(postDto -> {
+        fillReactions(pagePostDto.getContent(), accountId);
 
-            String myReaction = reactionService.getMyReaction(postDto.getId(), accountId);
+        return pagePostDto;
+    }
 
-            if (myReaction != null) {
-                postDto.setMyReaction(myReaction);
-                postDto.setMyLike(true);
-            }
-            postDto.setReactionType(reactionService.getReactionInfos(postDto.getId()));
-        });
 
-        return pagePostDto;
+    @LogExecutionTime
+    @Override
+    public SlicePostDto getFeed(@Valid PostSearchDto postSearchDto, String cursor, int requestedSize) {
+
+        int size = CursorUtils.normalizeSize(requestedSize);
+
+        CursorUtils.Cursor after = CursorUtils.decode(cursor);
+
+        UUID accountId = SecurityUtils.getAccountId();
+
+        processAccountIds(postSearchDto);
+        processDateFilters(postSearchDto, accountId);
+
+        Specification<Post> spec = PostSpecification.withFilters(postSearchDto, accountId)
+                .and(PostSpecification.afterCursor(after));
+
+        // Лента остается хронологической, поиск только ограничивает ее найденными постами
+        if (hasSearchQuery(postSearchDto)) {
+            spec = spec.and(PostSpecification.withIds(
+                    postSearchVectorRepository.findRankedIds(postSearchDto.getQuery(), searchMaxResults)));
+        }
+
+        // Берем на одну запись больше, чтобы узнать о следующей странице без count-запроса
+        List<Post> posts = postRepository.findBy(spec, query -> query
+                .sortBy(FEED_SORT)
+                .limit(size + 1)
+                .all());
+
+        boolean hasNext = posts.size() > size;
+        List<Post> content = hasNext ? posts.subList(0, size) : posts;
+
+        List<PostDto> postDtos = PostMapperFactory.toPostDtoList(content, loadTags(content));
+
+        fillReactions(postDtos, accountId);
+
+        Post last = content.isEmpty() ? null : content.get(content.size() - 1);
+
+        return SlicePostDto.builder()
+                .content(postDtos)
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? CursorUtils.encode(last.getPublishDate(), last.getId()) : null)
+                .build();
     }
 
 
@@ -137,7 +183,7 @@ public class PostServiceImpl implements PostService {
 
         Post post = PostMapperFactory.toPost(postDto);
 
-        accountId = SecurityUtils.getAccountId();
+        UUID accountId = SecurityUtils.getAccountId();
 
         post.setAuthorId(accountId);
         post.setId(null);// Сбрасываем ID, чтобы Hibernate сгенерировал новый
@@ -166,8 +212,6 @@ public class PostServiceImpl implements PostService {
 
         UUID postId = postDto.getId();
 
-        EntityCheckUtils.checkPostPresence(postRepository, postId);
-
         EntityCheckUtils.checkPostDto(postDto);
 
         Post post = postRepository.findById(postId)
@@ -178,6 +222,8 @@ public class PostServiceImpl implements PostService {
         }
 
         PostMapperFactory.updatePostFromDto(postDto, post);
+
+        postCacheService.evictPost(postId);
     }
 
 
@@ -193,46 +239,162 @@ public class PostServiceImpl implements PostService {
 
         // Обновляем флаг удаления поста без загрузки сущности
         postRepository.markAsDeleted(postId);
+
+        postCacheService.evictPost(postId);
     }
 
 
+    // Ответы friend- и account-сервисов берутся из локального кэша, см. AccountLookupService
     @LogExecutionTime
-    @Retryable(backoff = @Backoff(delay = 2000))
     public List<UUID> getFriendsIds() {
-
-        accountId = SecurityUtils.getAccountId();
-
-        try {
-            return friendServiceClient.getFriendsIds();
-        } catch (FeignException e) {
-            log.error("Error fetching friends ids by accountId: {}", accountId);
-            throw new CustomFreignException(MessageFormat.format("Error fetching friends by accountId: {0}", accountId));
-        }
+        return accountLookupService.getFriendsIds(SecurityUtils.getAccountId());
     }
 
 
     @LogExecutionTime
-    @Retryable(backoff = @Backoff(delay = 2000))
     public List<UUID> getAuthorIds(@Size(max = 255, message = "Author name must not exceed 255 characters") String author) {
-        try {
-            return accountServiceClient.searchAccount(author).getContent().stream().map(AccountDto::getId).toList();
-        } catch (FeignException e) {
-            throw new CustomFreignException(MessageFormat.format("Error fetching authorId by name: {0}", author));
-        }
+        return accountLookupService.getAuthorIds(author);
     }
 
 
     @Override
     @Transactional
     public void updateBlockedStatusForAccount(UUID uuid) {
-        postRepository.updateBlockedStatusForAccount(uuid);
+        updateBlockedStatusForAccounts(List.of(uuid));
     }
 
 
     @Override
     @Transactional
     public void updateDeletedStatusForAccount(UUID uuid) {
-        postRepository.updateDeletedStatusForAccount(uuid);
+        updateDeletedStatusForAccounts(List.of(uuid));
+    }
+
+
+    @LogExecutionTime
+    @Override
+    @Transactional
+    public void updateBlockedStatusForAccounts(Collection<UUID> accountIds) {
+        if (accountIds.isEmpty()) {
+            return;
+        }
+
+        int posts = postRepository.updateBlockedStatusForAccounts(accountIds);
+        log.info("Blocked {} accounts: {} posts", accountIds.size(), posts);
+
+        // Комментарии блокируются фоновой задачей чанками, без долгих блокировок строк
+        accountModerationJobService.enqueue(accountIds, ModerationAction.BLOCK);
+
+        // Затронуты посты и комментарии авторов, точечно их не найти — сбрасываем кэш целиком.
+        // Аккаунты также пропадают из поиска по автору и из списков друзей
+        postCacheService.evictAll();
+        accountLookupService.evictAll();
+    }
+
+
+    @LogExecutionTime
+    @Override
+    @Transactional
+    public void updateDeletedStatusForAccounts(Collection<UUID> accountIds) {
+        if (accountIds.isEmpty()) {
+            return;
+        }
+
+        int posts = postRepository.updateDeletedStatusForAccounts(accountIds);
+        log.info("Deleted {} accounts: {} posts", accountIds.size(), posts);
+
+        // Комментарии и реакции удаляются фоновой задачей чанками с пересчетом счетчиков
+        accountModerationJobService.enqueue(accountIds, ModerationAction.DELETE);
+
+        postCacheService.evictAll();
+        accountLookupService.evictAll();
+    }
+
+
+
+    private PostDto loadPost(UUID postId) {
+        Post post = postRepository.findWithTagsById(postId)
+                .orElseThrow(() -> new EntityNotFoundException(
+                        MessageFormat.format("Post with id {0} not found", postId)
+                ));
+
+        PostDto postDto = PostMapperFactory.toPostDto(post);
+        postDto.setReactionType(reactionService.getReactionInfos(postId));
+
+        return postDto;
+    }
+
+
+    // Теги всей страницы одним запросом WHERE post_id IN (...)
+    private static boolean hasSearchQuery(PostSearchDto postSearchDto) {
+        return postSearchDto.getQuery() != null && !postSearchDto.getQuery().isBlank();
+    }
+
+
+    // Выдача поиска по убыванию ts_rank: найденные id (не больше post-search.max-results) фильтруются спецификацией,
+    // страница вырезается из списка в порядке релевантности, сортировка из запроса не применяется
+    private Page<Post> searchPage(Specification<Post> spec, String searchQuery, Pageable pageable) {
+
+        List<UUID> rankedIds = postSearchVectorRepository.findRankedIds(searchQuery, searchMaxResults);
+
+        Pageable pageRequest = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
+
+        if (rankedIds.isEmpty()) {
+            return Page.empty(pageRequest);
+        }
+
+        Set<UUID> matchedIds = new HashSet<>();
+        postRepository.findBy(spec.and(PostSpecification.withIds(rankedIds)), query -> query.as(PostIdView.class).all())
+                .forEach(view -> matchedIds.add(view.getId()));
+
+        List<UUID> orderedIds = rankedIds.stream().filter(matchedIds::contains).toList();
+
+        int from = (int) Math.min(pageRequest.getOffset(), orderedIds.size());
+        List<UUID> pageIds = orderedIds.subList(from, Math.min(from + pageRequest.getPageSize(), orderedIds.size()));
+
+        Map<UUID, Post> postsById = new HashMap<>();
+        postRepository.findAllById(pageIds).forEach(post -> postsById.put(post.getId(), post));
+
+        List<Post> content = pageIds.stream().map(postsById::get).filter(Objects::nonNull).toList();
+
+        return new PageImpl<>(content, pageRequest, orderedIds.size());
+    }
+
+
+    private Map<UUID, List<String>> loadTags(List<Post> posts) {
+
+        if (posts.isEmpty()) {
+            return Map.of();
+        }
+
+        List<UUID> postIds = posts.stream().map(Post::getId).toList();
+
+        return PostMapperFactory.toTagsByPostId(postRepository.findTagsByPostIds(postIds));
+    }
+
+
+    // Реакции для всей страницы подтягиваем двумя запросами вместо двух запросов на каждый пост
+    private void fillReactions(List<PostDto> postDtos, UUID accountId) {
+
+        if (postDtos.isEmpty()) {
+            return;
+        }
+
+        List<UUID> postIds = postDtos.stream().map(PostDto::getId).toList();
+
+        Map<UUID, String> myReactions = reactionService.getMyReactions(postIds, accountId);
+        Map<UUID, List<ReactionDto.ReactionInfo>> reactionInfos = reactionService.getReactionInfos(postIds);
+
+        postDtos.forEach(postDto -> {
+
+            String myReaction = myReactions.get(postDto.getId());
+
+            if (myReaction != null) {
+                postDto.setMyReaction(myReaction);
+                postDto.setMyLike(true);
+            }
+            postDto.setReactionType(reactionInfos.get(postDto.getId()));
+        });
     }
 
 
@@ -0,0 +1,140 @@
+package ru.skillbox.social_network_post.service.impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skillbox.social_network_post.aspect.LogExecutionTime;
+import ru.skillbox.social_network_post.repository.CommentRepository;
+import ru.skillbox.social_network_post.repository.PostReactionCountRepository;
+import ru.skillbox.social_network_post.repository.PostRepository;
+import ru.skillbox.social_network_post.service.PostCacheService;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Пересобирает денормализованную таблицу post_reaction_counts из таблицы reactions
+ * и сверяет с ней reactions_count постов и like_amount их комментариев.
+ * Счётчики поддерживаются при записи реакций, эта задача лишь устраняет возможный дрейф.
+ * Ночная пересборка идет чанками по id постов, каждый чанк — отдельная короткая транзакция,
+ * и выполняется одним экземпляром сервиса под блокировкой job_locks.
+ * Сверка учитывает несвернутые дельты ReactionCounterBuffer и на время чанка приостанавливает их сворачивание.
+ */
+@Slf4j
+@Service
+public class ReactionCountReconciliationService {
+
+    private static final String REBUILD_LOCK = "reaction-counts-rebuild";
+    // Меньше любого UUID, с него начинается обход постов
+    private static final UUID FIRST_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+
+    private final PostReactionCountRepository postReactionCountRepository;
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final PostCacheService postCacheService;
+    private final ReactionCounterBuffer reactionCounterBuffer;
+    private final JobLockService jobLockService;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final Duration lockLease;
+
+
+    public ReactionCountReconciliationService(PostReactionCountRepository postReactionCountRepository,
+                                              PostRepository postRepository,
+                                              CommentRepository commentRepository,
+                                              PostCacheService postCacheService,
+                                              ReactionCounterBuffer reactionCounterBuffer,
+                                              JobLockService jobLockService,
+                                              PlatformTransactionManager transactionManager,
+                                              @Value("${reaction-counts.chunk-size:1000}") int chunkSize,
+                                              @Value("${reaction-counts.lock-lease:5m}") Duration lockLease) {
+        this.postReactionCountRepository = postReactionCountRepository;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.postCacheService = postCacheService;
+        this.reactionCounterBuffer = reactionCounterBuffer;
+        this.jobLockService = jobLockService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.lockLease = lockLease;
+    }
+
+
+    @LogExecutionTime
+    @Scheduled(cron = "${reaction-counts.reconcile-cron:0 30 3 * * *}")
+    public void rebuildAll() {
+        jobLockService.runExclusively(REBUILD_LOCK, lockLease, this::rebuildAllChunks);
+    }
+
+
+    @LogExecutionTime
+    @Transactional
+    public void rebuild(Collection<UUID> postIds) {
+        if (postIds.isEmpty()) {
+            return;
+        }
+
+        int rows = rebuildCounts(postIds);
+        log.info("Reaction counts rebuilt for {} posts. Rows: {}", postIds.size(), rows);
+
+        postIds.forEach(postCacheService::evictPost);
+    }
+
+
+    private void rebuildAllChunks() {
+        UUID afterId = FIRST_ID;
+        int posts = 0;
+        int rows = 0;
+        int counters = 0;
+
+        while (true) {
+            List<UUID> postIds = postRepository.findIdsAfter(afterId, chunkSize);
+
+            if (postIds.isEmpty()) {
+                break;
+            }
+
+            // Отдельные короткие транзакции: advisory-блокировка сворачивания держится только на время пересчета
+            Integer chunkRows = transactionTemplate.execute(status -> rebuildCounts(postIds));
+            rows += chunkRows != null ? chunkRows : 0;
+
+            Integer chunkCounters = transactionTemplate.execute(status -> reconcileCounters(postIds));
+            counters += chunkCounters != null ? chunkCounters : 0;
+            posts += postIds.size();
+            afterId = postIds.get(postIds.size() - 1);
+
+            // Продлеваем аренду; если ее уже перехватил другой экземпляр, останавливаемся
+            if (postIds.size() < chunkSize || !jobLockService.tryLock(REBUILD_LOCK, lockLease)) {
+                break;
+            }
+        }
+
+        log.info("Reaction counts rebuilt from reactions table. Posts: {}, rows: {}, counters fixed: {}",
+                posts, rows, counters);
+        postCacheService.evictAll();
+    }
+
+
+    private int reconcileCounters(Collection<UUID> postIds) {
+        reactionCounterBuffer.lockCounters();
+
+        return postRepository.recalculateReactionsCount(postIds)
+                + commentRepository.recalculateLikeAmountsByPostIds(postIds);
+    }
+
+
+    // Гистограмма пишется из снимка reactions за вычетом несвернутых дельт: сворачивание до коммита
+    // приостанавливается, иначе оно применило бы уже учтенные снимком дельты поверх записанных значений
+    private int rebuildCounts(Collection<UUID> postIds) {
+        reactionCounterBuffer.lockCounters();
+
+        return postReactionCountRepository.upsertCountsByPostIds(postIds)
+                + postReactionCountRepository.deleteStaleCountsByPostIds(postIds);
+    }
+}
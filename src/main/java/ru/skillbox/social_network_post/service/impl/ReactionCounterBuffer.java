@@ -0,0 +1,250 @@
+package ru.skillbox.social_network_post.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.skillbox.social_network_post.entity.ReactionCounterDelta;
+import ru.skillbox.social_network_post.repository.CommentRepository;
+import ru.skillbox.social_network_post.repository.PostReactionCountRepository;
+import ru.skillbox.social_network_post.repository.PostRepository;
+import ru.skillbox.social_network_post.repository.ReactionCounterDeltaRepository;
+import ru.skillbox.social_network_post.repository.projection.ReactionTypeDeltaView;
+import ru.skillbox.social_network_post.service.PostCacheService;
+
+import java.util.AbstractMap;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind буфер счетчиков posts.reactions_count, гистограммы post_reaction_counts и comments.like_amount.
+ * Приращение пишется строкой reaction_counter_deltas в транзакции самой реакции (вставка, без блокировки
+ * строк счетчиков), а по расписанию или при росте буфера дельты сворачиваются в счетчики одним UPDATE
+ * на пост/тип/комментарий. Так лайки популярного поста не ждут друг друга на блокировке одной строки,
+ * а дельты не теряются при откате, падении или остановке экземпляра.
+ * Чтения видят счетчики с задержкой до одного сброса: после сворачивания кэш постов сбрасывается.
+ * Пересчет по строкам reactions вычитает несвернутые дельты и выполняется под той же advisory-блокировкой,
+ * что и сворачивание (lockCounters).
+ */
+@Slf4j
+@Service
+public class ReactionCounterBuffer {
+
+    // Ключ дельты гистограммы: пост, затем тип реакции
+    private static final Comparator<Map.Entry<UUID, String>> REACTION_TYPE_KEY_ORDER =
+            Map.Entry.<UUID, String>comparingByKey().thenComparing(Map.Entry.comparingByValue());
+
+    private final ReactionCounterDeltaRepository reactionCounterDeltaRepository;
+    private final PostRepository postRepository;
+    private final PostReactionCountRepository postReactionCountRepository;
+    private final CommentRepository commentRepository;
+    private final PostCacheService postCacheService;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int maxPending;
+
+    // Дельты, записанные этим экземпляром после последнего сброса
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ExecutorService flushExecutor =
+            Executors.newSingleThreadExecutor(new CustomizableThreadFactory("reaction-counters-flush-"));
+
+
+    public ReactionCounterBuffer(ReactionCounterDeltaRepository reactionCounterDeltaRepository,
+                                 PostRepository postRepository,
+                                 PostReactionCountRepository postReactionCountRepository,
+                                 CommentRepository commentRepository,
+                                 PostCacheService postCacheService,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${reaction-counters.batch-size:5000}") int batchSize,
+                                 @Value("${reaction-counters.max-pending:2000}") int maxPending) {
+        this.reactionCounterDeltaRepository = reactionCounterDeltaRepository;
+        this.postRepository = postRepository;
+        this.postReactionCountRepository = postReactionCountRepository;
+        this.commentRepository = commentRepository;
+        this.postCacheService = postCacheService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+    }
+
+
+    // Дельта фиксируется и откатывается вместе с реакцией
+    public void addPostDelta(UUID postId, String reactionType, int delta) {
+        add(ReactionCounterDelta.builder().postId(postId).reactionType(reactionType).delta(delta).build());
+    }
+
+
+    public void addCommentDelta(UUID commentId, int delta) {
+        add(ReactionCounterDelta.builder().commentId(commentId).delta(delta).build());
+    }
+
+
+    // Еще не свернутая в счетчик часть — только для путей записи, чтения принимают задержку сброса
+    public long pendingPostDelta(UUID postId) {
+        return reactionCounterDeltaRepository.sumByPostId(postId);
+    }
+
+
+    public long pendingCommentDelta(UUID commentId) {
+        return reactionCounterDeltaRepository.sumByCommentId(commentId);
+    }
+
+
+    // Несвернутая часть гистограммы поста по типам реакций
+    public Map<String, Long> pendingReactionDeltas(UUID postId) {
+        return reactionCounterDeltaRepository.sumByPostIdGroupByType(postId).stream()
+                .filter(view -> view.reactionType() != null)
+                .collect(Collectors.toMap(ReactionTypeDeltaView::reactionType, ReactionTypeDeltaView::delta));
+    }
+
+
+    // Пересчет счетчиков по строкам reactions в текущей транзакции не должен пересечься со сворачиванием дельт
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void lockCounters() {
+        reactionCounterDeltaRepository.lockCounters();
+    }
+
+
+    @Scheduled(fixedDelayString = "${reaction-counters.flush-delay-ms:500}")
+    public void flush() {
+        pending.set(0);
+        flushRequested.set(false);
+
+        Set<UUID> postIds = new HashSet<>();
+        Set<UUID> commentIds = new HashSet<>();
+
+        try {
+            // Пачками, каждая — отдельная транзакция; пока пачки полные, дельты еще остались
+            Integer folded;
+            do {
+                folded = transactionTemplate.execute(status -> foldBatch(postIds, commentIds));
+            } while (folded != null && folded == batchSize);
+
+        } catch (RuntimeException e) {
+            // Свернутые пачки уже закоммичены, остальные дельты останутся до следующего сброса
+            log.error("Failed to flush reaction counters, will retry: {}", e.getMessage());
+        }
+
+        // Кэш сбрасываем после коммита, иначе он может снова заполниться старым значением счетчика
+        postIds.forEach(postCacheService::evictPost);
+        if (!commentIds.isEmpty()) {
+            commentRepository.findPostIdsByIds(commentIds).forEach(postCacheService::evictComments);
+        }
+
+        if (!postIds.isEmpty() || !commentIds.isEmpty()) {
+            log.debug("Reaction counters flushed: {} posts, {} comments", postIds.size(), commentIds.size());
+        }
+    }
+
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdownNow();
+    }
+
+
+    private void add(ReactionCounterDelta delta) {
+        reactionCounterDeltaRepository.save(delta);
+
+        // Внеочередной сброс при росте буфера; до коммита дельта не видна сворачиванию
+        afterCommit(() -> {
+            if (pending.incrementAndGet() >= maxPending && flushRequested.compareAndSet(false, true)) {
+                try {
+                    flushExecutor.execute(this::flush);
+                } catch (RejectedExecutionException e) {
+                    flushRequested.set(false);
+                }
+            }
+        });
+    }
+
+
+    private int foldBatch(Set<UUID> postIds, Set<UUID> commentIds) {
+
+        // Сворачивает один экземпляр за раз, остальные пропускают такт
+        if (!reactionCounterDeltaRepository.tryLockCounters()) {
+            return 0;
+        }
+
+        List<ReactionCounterDelta> deltas = reactionCounterDeltaRepository.findNextBatch(batchSize);
+
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        // Строки обновляем в порядке ключа, чтобы не блокировать крест-накрест другие транзакции над постами
+        Map<UUID, Long> posts = new TreeMap<>();
+        Map<Map.Entry<UUID, String>, Long> reactionTypes = new TreeMap<>(REACTION_TYPE_KEY_ORDER);
+        Map<UUID, Long> comments = new TreeMap<>();
+
+        deltas.forEach(delta -> {
+            if (delta.getPostId() != null) {
+                posts.merge(delta.getPostId(), (long) delta.getDelta(), Long::sum);
+                if (delta.getReactionType() != null) {
+                    reactionTypes.merge(new AbstractMap.SimpleImmutableEntry<>(delta.getPostId(), delta.getReactionType()),
+                            (long) delta.getDelta(), Long::sum);
+                }
+            } else {
+                comments.merge(delta.getCommentId(), (long) delta.getDelta(), Long::sum);
+            }
+        });
+
+        posts.forEach((postId, delta) -> {
+            if (delta != 0) {
+                postRepository.addReactionsCount(postId, delta);
+            }
+        });
+        reactionTypes.forEach((key, delta) -> {
+            if (delta != 0) {
+                postReactionCountRepository.addCount(key.getKey(), key.getValue(), delta);
+            }
+        });
+        comments.forEach((commentId, delta) -> {
+            if (delta != 0) {
+                commentRepository.addLikeAmount(commentId, Math.toIntExact(delta));
+            }
+        });
+
+        reactionCounterDeltaRepository.deleteAllByIdInBatch(deltas.stream().map(ReactionCounterDelta::getId).toList());
+
+        postIds.addAll(posts.keySet());
+        commentIds.addAll(comments.keySet());
+
+        return deltas.size();
+    }
+
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -10,14 +10,18 @@ import ru.skillbox.social_network_post.dto.ReactionDto;
 import ru.skillbox.social_network_post.dto.ReactionType;
 import ru.skillbox.social_network_post.dto.RequestReactionDto;
 import ru.skillbox.social_network_post.entity.Post;
+import ru.skillbox.social_network_post.entity.PostReactionCount;
 import ru.skillbox.social_network_post.entity.Reaction;
 import ru.skillbox.social_network_post.exception.EntityNotFoundException;
 import ru.skillbox.social_network_post.mapper.LikeMapperFactory;
 import ru.skillbox.social_network_post.repository.CommentRepository;
+import ru.skillbox.social_network_post.repository.PostReactionCountRepository;
 import ru.skillbox.social_network_post.repository.ReactionRepository;
 import ru.skillbox.social_network_post.repository.PostRepository;
+import ru.skillbox.social_network_post.repository.projection.ReactionUpsertView;
 import ru.skillbox.social_network_post.security.SecurityUtils;
 import ru.skillbox.social_network_post.service.KafkaService;
+import ru.skillbox.social_network_post.service.PostCacheService;
 import ru.skillbox.social_network_post.service.ReactionService;
 import ru.skillbox.social_network_post.utils.EntityCheckUtils;
 
@@ -35,7 +39,10 @@ public class ReactionServiceImpl implements ReactionService {
     private final PostRepository postRepository;
     private final CommentRepository commentRepository;
     private final ReactionRepository reactionRepository;
-    private UUID accountId;
+    private final PostReactionCountRepository postReactionCountRepository;
+    private final PostCacheService postCacheService;
+    private final ReactionCounterBuffer reactionCounterBuffer;
+    private final ReactionCountReconciliationService reactionCountReconciliationService;
     private final KafkaService kafkaService;
 
 
@@ -44,45 +51,38 @@ public class ReactionServiceImpl implements ReactionService {
     @Transactional
     public ReactionDto addLikeToPost(UUID postId, RequestReactionDto requestReactionDto) {
 
-        Post post = EntityCheckUtils.checkPostPresence(postRepository, postId);
+        EntityCheckUtils.checkPostPresence(postRepository, postId);
         EntityCheckUtils.checkReactionDto(requestReactionDto);
 
-        accountId = SecurityUtils.getAccountId();
+        UUID accountId = SecurityUtils.getAccountId();
 
         Reaction reaction = LikeMapperFactory.toReaction(requestReactionDto);
-        reaction.setPost(post);
-        reaction.setAuthorId(accountId);
-
+        reaction.setCreatedAt(LocalDateTime.now(ZoneOffset.UTC));
 
-        // Проверяем, ставил ли пользователь реакцию на пост
-        if (reactionRepository.existsByPostIdAndAuthorIdAndCommentIdIsNull(postId, accountId)) {
-            log.warn("Реакция уже есть...");
-
-            // Получаем реакцию, если она есть
-            Optional<Reaction> reactionOptional = reactionRepository.findByPostIdAndAuthorId(postId, accountId);
-            reactionOptional.ifPresent(reactionRepository::delete);
-        }
-
-        reactionRepository.save(reaction);
+        // Вставка или замена реакции одним запросом: без гонки между проверкой и вставкой
+        ReactionUpsertView upserted = reactionRepository.upsertPostReaction(UUID.randomUUID(), postId, accountId,
+                reaction.getType(), reaction.getReactionType(), reaction.getCreatedAt());
 
-        postRepository.incrementReactionsCount(postId);
+        updateReactionCounters(postId, reaction.getReactionType(), upserted);
 
-        List<ReactionDto.ReactionInfo> reactionInfoList = getReactionInfos(postId);
+        // В ответе автору — гистограмма вместе с еще не свернутыми дельтами, включая его реакцию
+        List<ReactionDto.ReactionInfo> reactionInfoList = getReactionInfosWithPending(postId);
 
-        long totalReactions = reactionRepository.countByPostId(postId);
+        long totalReactions = reactionInfoList.stream().mapToLong(ReactionDto.ReactionInfo::getCount).sum();
 
 
         ReactionNotificationDto reactionNotificationDto = ReactionNotificationDto.builder()
                 .authorId(accountId)
-                .reactionId(reaction.getId())
+                .reactionId(upserted.getId())
                 .postId(postId)
-                .commentId(reaction.getCommentId())
+                .commentId(null)
                 .reactionType(reaction.getReactionType())
                 .publishDate(reaction.getCreatedAt())
                 .build();
 
         kafkaService.newLikeEvent(reactionNotificationDto);
 
+        postCacheService.evictPost(postId);
 
         return ReactionDto.builder()
                 .active(true)
@@ -92,25 +92,74 @@ public class ReactionServiceImpl implements ReactionService {
                 .build();
     }
 
+
+    // Счетчик и гистограмма меняются через write-behind буфер: общий счетчик растет только при новой реакции,
+    // при смене типа дельты -1 и +1 по типам в сумме его не меняют. Заблокированная реакция в счетчиках не учтена
+    private void updateReactionCounters(UUID postId, String reactionType, ReactionUpsertView upserted) {
+
+        if (Boolean.TRUE.equals(upserted.getBlocked())) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(upserted.getInserted())) {
+            reactionCounterBuffer.addPostDelta(postId, reactionType, 1);
+            return;
+        }
+
+        String previousType = upserted.getPreviousReactionType();
+
+        if (previousType == null) {
+            // Конфликт с параллельной вставкой, которой не было в снимке запроса: прежний тип неизвестен,
+            // гистограмма поста пересобирается под блокировкой сворачивания дельт
+            reactionCountReconciliationService.rebuild(List.of(postId));
+
+        } else if (!previousType.equals(reactionType)) {
+            reactionCounterBuffer.addPostDelta(postId, previousType, -1);
+            reactionCounterBuffer.addPostDelta(postId, reactionType, 1);
+        }
+    }
+
     @Override
     public List<ReactionDto.ReactionInfo> getReactionInfos(UUID postId) {
-        // Запрос к БД, получаем только те реакции, которые есть
-        List<Object[]> dbResults = reactionRepository.countReactionsByPostId(postId);
+        // Читаем готовую гистограмму из post_reaction_counts вместо GROUP BY по reactions
+        Map<String, Long> reactionCountMap = postReactionCountRepository.findByPostId(postId).stream()
+                .collect(Collectors.toMap(
+                        PostReactionCount::getReactionType,
+                        PostReactionCount::getCount
+                ));
 
-        // Преобразуем в Map для удобства
-        Map<String, Long> reactionCountMap = dbResults.stream()
+        return toReactionInfos(reactionCountMap);
+    }
+
+    private List<ReactionDto.ReactionInfo> getReactionInfosWithPending(UUID postId) {
+        Map<String, Long> reactionCountMap = postReactionCountRepository.findByPostId(postId).stream()
                 .collect(Collectors.toMap(
-                        result -> (String) result[0],
-                        result -> (Long) result[1]
+                        PostReactionCount::getReactionType,
+                        PostReactionCount::getCount,
+                        Long::sum,
+                        HashMap::new
                 ));
+        reactionCounterBuffer.pendingReactionDeltas(postId).forEach((type, delta) -> reactionCountMap.merge(type, delta, Long::sum));
 
-        // Гарантируем наличие всех реакций
-        List<ReactionDto.ReactionInfo> reactionInfos = new ArrayList<>();
-        for (ReactionType type : ReactionType.values()) {
-            reactionInfos.add(new ReactionDto.ReactionInfo(
-                    type.getName(),
-                    reactionCountMap.getOrDefault(type.getName(), 0L)
-            ));
+        return toReactionInfos(reactionCountMap);
+    }
+
+    @Override
+    public Map<UUID, List<ReactionDto.ReactionInfo>> getReactionInfos(Collection<UUID> postIds) {
+        if (postIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        // Один запрос на всю страницу
+        Map<UUID, Map<String, Long>> countsByPost = new HashMap<>();
+        for (PostReactionCount reactionCount : postReactionCountRepository.findByPostIdIn(postIds)) {
+            countsByPost.computeIfAbsent(reactionCount.getPostId(), id -> new HashMap<>())
+                    .put(reactionCount.getReactionType(), reactionCount.getCount());
+        }
+
+        Map<UUID, List<ReactionDto.ReactionInfo>> reactionInfos = new HashMap<>();
+        for (UUID postId : postIds) {
+            reactionInfos.put(postId, toReactionInfos(countsByPost.getOrDefault(postId, Collections.emptyMap())));
         }
 
         return reactionInfos;
@@ -123,11 +172,47 @@ public class ReactionServiceImpl implements ReactionService {
                 .orElse(null);
     }
 
+    @Override
+    public Map<UUID, String> getMyReactions(Collection<UUID> postIds, UUID accountId) {
+        if (postIds.isEmpty() || accountId == null) {
+            return Collections.emptyMap();
+        }
+
+        return reactionRepository.findReactionTypesByPostIdsAndAuthorId(postIds, accountId).stream()
+                .collect(Collectors.toMap(
+                        result -> (UUID) result[0],
+                        result -> (String) result[1],
+                        (first, second) -> first
+                ));
+    }
+
+    // Гарантируем наличие всех типов реакций в ответе
+    private static List<ReactionDto.ReactionInfo> toReactionInfos(Map<String, Long> reactionCountMap) {
+        List<ReactionDto.ReactionInfo> reactionInfos = new ArrayList<>();
+        for (ReactionType type : ReactionType.values()) {
+            reactionInfos.add(new ReactionDto.ReactionInfo(
+                    type.getName(),
+                    reactionCountMap.getOrDefault(type.getName(), 0L)
+            ));
+        }
+
+        return reactionInfos;
+    }
+
     @Override
     public Boolean getMyReactionToComment(UUID postId, UUID commentId, UUID accountId) {
         return reactionRepository.existsByPostIdAndCommentIdAndAuthorId(postId, commentId, accountId);
     }
 
+    @Override
+    public Set<UUID> getMyLikedComments(UUID postId, Collection<UUID> commentIds, UUID accountId) {
+        if (commentIds.isEmpty() || accountId == null) {
+            return Collections.emptySet();
+        }
+
+        return new HashSet<>(reactionRepository.findLikedCommentIds(postId, commentIds, accountId));
+    }
+
 
     @LogExecutionTime
     @Override
@@ -136,20 +221,27 @@ public class ReactionServiceImpl implements ReactionService {
 
         EntityCheckUtils.checkPostPresence(postRepository, postId);
 
-        int likeAmount = postRepository.getReactionsCount(postId);
+        long likeAmount = postRepository.getReactionsCount(postId) + reactionCounterBuffer.pendingPostDelta(postId);
 
         if (likeAmount <= 0) {
             throw new IllegalStateException(
                     MessageFormat.format("Невозможно удалить лайк с поста {0}: количество лайков уже 0", postId));
         }
 
-        accountId = SecurityUtils.getAccountId();
+        UUID accountId = SecurityUtils.getAccountId();
+
+
+        Optional<Reaction> reaction = reactionRepository.findByPostIdAndAuthorId(postId, accountId);
 
+        if (reaction.isPresent()) {
+            reactionRepository.delete(reaction.get());
 
-        if (reactionRepository.existsByPostIdAndAuthorIdAndCommentIdIsNull(postId, accountId)) {
-            reactionRepository.deleteByPostIdAndAuthorId(postId, accountId);
+            // Заблокированная реакция уже исключена из счетчиков
+            if (!Boolean.TRUE.equals(reaction.get().getIsBlocked())) {
+                reactionCounterBuffer.addPostDelta(postId, reaction.get().getReactionType(), -1);
+            }
 
-            postRepository.updateReactionsCount(postId);
+            postCacheService.evictPost(postId);
 
         } else {
             log.warn("Failed remove reaction from post. There are not reactions for post with id {} by accountId {}", postId, accountId);
@@ -165,7 +257,7 @@ public class ReactionServiceImpl implements ReactionService {
         Post post = EntityCheckUtils.checkPostPresence(postRepository, postId);
         EntityCheckUtils.checkCommentPresence(commentRepository, commentId);
 
-        accountId = SecurityUtils.getAccountId();
+        UUID accountId = SecurityUtils.getAccountId();
 
         // Проверка, существует ли комментарий с таким ID и связан ли он с постом
         if (!commentRepository.existsByPostIdAndId(postId, commentId)) {
@@ -193,7 +285,9 @@ public class ReactionServiceImpl implements ReactionService {
 
         reactionRepository.save(reaction);
 
-        commentRepository.incrementLikeAmount(commentId);
+        reactionCounterBuffer.addCommentDelta(commentId, 1);
+
+        postCacheService.evictComments(postId);
 
         ReactionNotificationDto reactionNotificationDto = ReactionNotificationDto.builder()
                 .authorId(accountId)
@@ -216,22 +310,29 @@ public class ReactionServiceImpl implements ReactionService {
         EntityCheckUtils.checkPostPresence(postRepository, postId);
         EntityCheckUtils.checkCommentPresence(commentRepository, commentId);
 
-        int likeAmount = commentRepository.getLikeAmount(commentId);
+        long likeAmount = commentRepository.getLikeAmount(commentId) + reactionCounterBuffer.pendingCommentDelta(commentId);
 
         if (likeAmount <= 0) {
             throw new IllegalStateException(
                     MessageFormat.format("Cannot remove like from post {0} and comment {1}: like count is already 0", postId, commentId));
         }
 
-        accountId = SecurityUtils.getAccountId();
+        UUID accountId = SecurityUtils.getAccountId();
 
-        if (reactionRepository.existsByCommentIdAndAuthorId(commentId, accountId)) {
+        List<Boolean> deletedBlocked = reactionRepository.deleteCommentReactionReturningBlocked(commentId, accountId);
+
+        if (!deletedBlocked.isEmpty()) {
 
             log.warn("Remove like from comment {}. AccountID {}", commentId, accountId);
 
-            commentRepository.updateLikeAmount(commentId);
+            // Заблокированная реакция уже исключена из счетчика
+            int delta = (int) deletedBlocked.stream().filter(blocked -> !Boolean.TRUE.equals(blocked)).count();
+
+            if (delta > 0) {
+                reactionCounterBuffer.addCommentDelta(commentId, -delta);
+            }
 
-            reactionRepository.deleteByCommentIdAndAuthorId(commentId, accountId);
+            postCacheService.evictComments(postId);
         } else {
             log.warn("Failed remove like from comment. There are not likes for comment with id {} by accountId {}", commentId, accountId);
         }
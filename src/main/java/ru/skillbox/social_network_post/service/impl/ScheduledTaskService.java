@@ -20,7 +20,6 @@ import ru.skillbox.social_network_post.client.AuthServiceClient;
 import ru.skillbox.social_network_post.dto.*;
 import ru.skillbox.social_network_post.exception.CustomFreignException;
 import ru.skillbox.social_network_post.security.HeaderAuthenticationToken;
-import ru.skillbox.social_network_post.security.SecurityUtils;
 import ru.skillbox.social_network_post.service.CommentService;
 import ru.skillbox.social_network_post.service.PostService;
 import ru.skillbox.social_network_post.service.ReactionService;
@@ -59,25 +58,38 @@ public class ScheduledTaskService {
     private static final AtomicInteger counter = new AtomicInteger(1);
     private final Random random = new Random();
 
+    // Токен сервисного пользователя хранится между запусками: с виртуальными потоками
+    // каждый запуск идет в новом потоке, и ThreadLocal его не сохранил бы
+    private volatile String token;
+
     @Scheduled(fixedRate = 7_200_000) // каждые 2 часа
     public void executeTask() {
         log.warn("Scheduled task.... {}", System.currentTimeMillis());
 
-        boolean isTokenValid = tokenValidation(SecurityUtils.getToken());
+        boolean isTokenValid = token != null && tokenValidation(token);
 
         if (!isTokenValid) {
             log.warn("Scheduled task. Token validation failed!!! Trying to login....");
 
-            String token = authenticateUser(login, password);
+            token = authenticateUser(login, password);
 
             if (token != null) {
                 log.info("Scheduled task. Login successful");
-                SecurityUtils.saveToken(token);
             } else {
                 log.warn("Scheduled task. Token null");
             }
         }
 
+        try {
+            authenticate(null);
+            createFakePosts();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private void createFakePosts() {
+
         List<UUID> accountIds = getAccountIds();
         log.warn("Scheduled task. Fetch all account ids: {}", accountIds);
 
@@ -87,11 +99,7 @@ public class ScheduledTaskService {
         mutableList.forEach(accountId -> {
             try {
 
-                String userName = "Scheduled_user";
-
-                Authentication authentication = new HeaderAuthenticationToken(accountId, userName,
-                        Collections.singletonList(new SimpleGrantedAuthority("Scheduled_User")));
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                authenticate(accountId);
                 log.warn("Successfully authenticated user: {}", accountId);
 
                 // Искусственная задержка 1-2 секунды между запросами цитат
@@ -124,6 +132,13 @@ public class ScheduledTaskService {
         });
     }
 
+    // Токен кладем в SecurityContext вместе с пользователем, оттуда его берет Feign-интерсептор
+    private void authenticate(UUID accountId) {
+        Authentication authentication = new HeaderAuthenticationToken(accountId, "Scheduled_user",
+                Collections.singletonList(new SimpleGrantedAuthority("Scheduled_User")), token);
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+    }
+
     void createFakeComments(PagePostDto postsForComments) {
 
         if (postsForComments != null) {
@@ -0,0 +1,53 @@
+package ru.skillbox.social_network_post.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+// Непрозрачный курсор для keyset-пагинации: позиция последней отданной записи (время, id)
+public class CursorUtils {
+
+    private static final String SEPARATOR = "|";
+    private static final int MAX_SIZE = 100;
+
+    private CursorUtils() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    public record Cursor(LocalDateTime time, UUID id) {
+    }
+
+
+    // Размер среза ограничиваем, чтобы один запрос не выгружал всю ленту
+    public static int normalizeSize(int size) {
+        return Math.max(1, Math.min(size, MAX_SIZE));
+    }
+
+
+    public static String encode(LocalDateTime time, UUID id) {
+        String raw = time + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    // null или пустая строка — первая страница
+    public static Cursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separatorIndex = raw.lastIndexOf(SEPARATOR);
+
+            return new Cursor(
+                    LocalDateTime.parse(raw.substring(0, separatorIndex)),
+                    UUID.fromString(raw.substring(separatorIndex + 1)));
+
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new IllegalStateException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
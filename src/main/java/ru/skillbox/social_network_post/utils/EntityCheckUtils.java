@@ -29,6 +29,14 @@ public class EntityCheckUtils {
                 });
     }
 
+    public static Comment checkCommentPresenceForUpdate(CommentRepository commentRepository, UUID commentId) {
+        return commentRepository.findByIdForUpdate(commentId)
+                .orElseThrow(() -> {
+                    log.warn("Comment with ID {} not found", commentId);
+                    return new EntityNotFoundException(MessageFormat.format("Comment with id {0} not found", commentId));
+                });
+    }
+
     // Utility method to check if both comment and post are present
     public static Pair<Post, Comment> checkCommentAndPostPresence(
             CommentRepository commentRepository,
@@ -36,9 +44,7 @@ public class EntityCheckUtils {
             UUID postId,
             UUID commentId) {
 
-        Post post = postRepository.findById(postId)
-                .orElseThrow(() -> new EntityNotFoundException(
-                        MessageFormat.format("Post with id {0} not found", postId)));
+        Post post = checkPostPresence(postRepository, postId);
 
         Comment comment = commentRepository.findById(commentId)
                 .orElseThrow(() -> new EntityNotFoundException(
@@ -53,10 +59,14 @@ public class EntityCheckUtils {
     }
 
 
-    // Utility method to check post presence and return the post if found
+    // Utility method to check post presence and return a reference to the post.
+    // Пост не загружается: для записи реакций и комментариев достаточно ссылки по id
     public static Post checkPostPresence(PostRepository postRepository, UUID postId) {
-        return postRepository.findById(postId)
-                .orElseThrow(() -> new EntityNotFoundException(MessageFormat.format("Post with id {0} not found", postId)));
+        if (!postRepository.existsById(postId)) {
+            throw new EntityNotFoundException(MessageFormat.format("Post with id {0} not found", postId));
+        }
+
+        return postRepository.getReferenceById(postId);
     }
 
     // Utility method to validate LikeDto
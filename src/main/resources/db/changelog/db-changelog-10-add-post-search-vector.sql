@@ -0,0 +1,10 @@
+-- Полнотекстовый индекс постов: заголовок весомее текста, русская и английская морфология
+ALTER TABLE schema_post.posts ADD COLUMN IF NOT EXISTS search_vector tsvector GENERATED ALWAYS AS (
+    setweight(to_tsvector('russian', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('russian', coalesce(post_text, '')), 'B') ||
+    setweight(to_tsvector('english', coalesce(post_text, '')), 'B')
+) STORED;
+
+-- Поиск search_vector @@ tsquery
+CREATE INDEX idx_post_search_vector ON schema_post.posts USING GIN (search_vector);
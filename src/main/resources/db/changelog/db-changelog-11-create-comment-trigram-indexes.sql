@@ -0,0 +1,7 @@
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Поиск подстроки lower(comment_text) LIKE '%x%' по триграммам вместо полного сканирования
+CREATE INDEX idx_comment_text_trgm ON schema_post.comments USING GIN (lower(comment_text) gin_trgm_ops);
+
+-- Поиск подстроки image_path LIKE '%x%'
+CREATE INDEX idx_comment_image_path_trgm ON schema_post.comments USING GIN (image_path gin_trgm_ops);
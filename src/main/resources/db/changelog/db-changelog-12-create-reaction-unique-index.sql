@@ -0,0 +1,23 @@
+-- Дубли реакций одного автора на пост (гонка check-then-act): оставляем самую позднюю
+DELETE FROM schema_post.reactions r
+USING schema_post.reactions d
+WHERE r.comment_id IS NULL
+  AND d.comment_id IS NULL
+  AND r.post_id = d.post_id
+  AND r.author_id = d.author_id
+  AND (r.created_at, r.id) < (d.created_at, d.id);
+
+-- Одна реакция автора на пост, цель для INSERT ... ON CONFLICT
+CREATE UNIQUE INDEX idx_reaction_post_author_unique ON schema_post.reactions (post_id, author_id) WHERE comment_id IS NULL;
+
+-- Счетчики могли уйти вверх из-за замены реакции, пересчитываем по фактическим строкам
+UPDATE schema_post.posts p
+SET reactions_count = (SELECT COUNT(*) FROM schema_post.reactions r WHERE r.post_id = p.id AND r.comment_id IS NULL);
+
+DELETE FROM schema_post.post_reaction_counts;
+
+INSERT INTO schema_post.post_reaction_counts (post_id, reaction_type, count)
+SELECT post_id, reaction_type, COUNT(*)
+FROM schema_post.reactions
+WHERE comment_id IS NULL
+GROUP BY post_id, reaction_type;
@@ -0,0 +1,8 @@
+-- Блокировки фоновых задач на уровне кластера: задачу выполняет один экземпляр сервиса,
+-- блокировка снимается по истечении locked_until, если владелец упал
+CREATE TABLE IF NOT EXISTS schema_post.job_locks (
+    name VARCHAR(64) PRIMARY KEY,
+    locked_until TIMESTAMPTZ NOT NULL,
+    locked_at TIMESTAMPTZ NOT NULL,
+    locked_by VARCHAR(64) NOT NULL
+    );
@@ -0,0 +1,6 @@
+-- Реакции заблокированных аккаунтов сохраняются (для разблокировки), но не учитываются в счетчиках
+ALTER TABLE schema_post.reactions ADD COLUMN IF NOT EXISTS is_blocked BOOLEAN NOT NULL DEFAULT false;
+
+-- Индекс для выборки реакций аккаунта чанками по признаку блокировки, заменяет индекс по author_id
+CREATE INDEX idx_reaction_author_blocked ON schema_post.reactions (author_id, is_blocked);
+DROP INDEX IF EXISTS schema_post.idx_reaction_author;
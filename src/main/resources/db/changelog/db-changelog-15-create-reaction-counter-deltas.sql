@@ -0,0 +1,13 @@
+-- Несвернутые приращения posts.reactions_count и comments.like_amount.
+-- Пишутся в транзакции реакции, в счетчики их переносит ReactionCounterBuffer
+CREATE TABLE IF NOT EXISTS schema_post.reaction_counter_deltas (
+    id BIGSERIAL PRIMARY KEY,
+    post_id UUID,
+    comment_id UUID,
+    delta INTEGER NOT NULL,
+    CONSTRAINT chk_reaction_counter_delta_target CHECK ((post_id IS NULL) <> (comment_id IS NULL))
+);
+
+-- Сумма несвернутых дельт поста/комментария при чтении и пересчете счетчиков
+CREATE INDEX idx_reaction_counter_delta_post ON schema_post.reaction_counter_deltas (post_id) WHERE post_id IS NOT NULL;
+CREATE INDEX idx_reaction_counter_delta_comment ON schema_post.reaction_counter_deltas (comment_id) WHERE comment_id IS NOT NULL;
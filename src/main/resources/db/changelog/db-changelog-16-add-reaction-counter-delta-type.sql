@@ -0,0 +1,2 @@
+-- Тип реакции у дельт постов: из них сворачивается и гистограмма post_reaction_counts
+ALTER TABLE schema_post.reaction_counter_deltas ADD COLUMN IF NOT EXISTS reaction_type VARCHAR(50);
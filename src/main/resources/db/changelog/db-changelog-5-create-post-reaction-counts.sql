@@ -0,0 +1,16 @@
+-- Денормализованная гистограмма реакций по постам (обновляется при записи реакций)
+CREATE TABLE IF NOT EXISTS schema_post.post_reaction_counts (
+    post_id UUID NOT NULL,
+    reaction_type VARCHAR(50) NOT NULL,
+    count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (post_id, reaction_type),
+    FOREIGN KEY (post_id) REFERENCES schema_post.posts(id) ON DELETE CASCADE
+    );
+
+-- Первичное заполнение из уже существующих реакций на посты
+INSERT INTO schema_post.post_reaction_counts (post_id, reaction_type, count)
+SELECT post_id, reaction_type, COUNT(*)
+FROM schema_post.reactions
+WHERE comment_id IS NULL
+GROUP BY post_id, reaction_type
+ON CONFLICT (post_id, reaction_type) DO NOTHING;
@@ -0,0 +1,5 @@
+-- Индекс для keyset-пагинации комментариев первого уровня: WHERE post_id, comment_type ORDER BY time, id
+CREATE INDEX idx_comment_post_type_time_id ON schema_post.comments (post_id, comment_type, time, id);
+
+-- Индекс для keyset-пагинации ответов на комментарий: WHERE parent_id ORDER BY time, id
+CREATE INDEX idx_comment_parent_time_id ON schema_post.comments (parent_id, time, id);
@@ -0,0 +1,9 @@
+-- Transactional outbox: события пишутся в одной транзакции с данными и отправляются в Kafka фоновой задачей
+CREATE TABLE IF NOT EXISTS schema_post.outbox_events (
+    id BIGSERIAL PRIMARY KEY,
+    topic VARCHAR(255) NOT NULL,
+    event_type VARCHAR(50) NOT NULL,
+    aggregate_id UUID,
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL
+    );
@@ -0,0 +1,16 @@
+-- Фоновые задачи каскадной блокировки/удаления контента аккаунта (обрабатываются чанками)
+CREATE TABLE IF NOT EXISTS schema_post.account_moderation_jobs (
+    id BIGSERIAL PRIMARY KEY,
+    account_id UUID NOT NULL,
+    action VARCHAR(20) NOT NULL,
+    stage VARCHAR(20) NOT NULL,
+    processed_rows BIGINT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP
+    );
+
+-- Очередь незавершенных задач
+CREATE INDEX idx_moderation_job_pending ON schema_post.account_moderation_jobs (id) WHERE stage <> 'DONE';
+
+-- Индекс для выборки реакций аккаунта чанками
+CREATE INDEX idx_reaction_author ON schema_post.reactions (author_id);
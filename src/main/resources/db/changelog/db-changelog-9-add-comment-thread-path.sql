@@ -0,0 +1,21 @@
+-- Материализованный путь для веток комментариев: id предков через "/", у комментариев первого уровня — "/"
+ALTER TABLE schema_post.comments ADD COLUMN IF NOT EXISTS thread_path TEXT NOT NULL DEFAULT '/';
+ALTER TABLE schema_post.comments ADD COLUMN IF NOT EXISTS depth INT NOT NULL DEFAULT 0;
+
+-- Заполнение для существующих комментариев
+WITH RECURSIVE tree AS (
+    SELECT id, '/'::TEXT AS path, 0 AS depth
+    FROM schema_post.comments
+    WHERE parent_id IS NULL
+    UNION ALL
+    SELECT c.id, t.path || t.id::TEXT || '/', t.depth + 1
+    FROM schema_post.comments c
+    JOIN tree t ON c.parent_id = t.id
+)
+UPDATE schema_post.comments c
+SET thread_path = tree.path, depth = tree.depth
+FROM tree
+WHERE c.id = tree.id;
+
+-- Префиксный поиск поддерева (LIKE 'prefix%')
+CREATE INDEX idx_comment_thread_path ON schema_post.comments (thread_path text_pattern_ops);
@@ -15,10 +15,12 @@ import org.springframework.test.web.servlet.MockMvc;
 import ru.skillbox.social_network_post.dto.CommentDto;
 import ru.skillbox.social_network_post.dto.CommentSearchDto;
 import ru.skillbox.social_network_post.dto.PageCommentDto;
+import ru.skillbox.social_network_post.dto.SliceCommentDto;
 import ru.skillbox.social_network_post.service.CommentService;
 import ru.skillbox.social_network_post.service.ReactionService;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.mockito.Mockito.*;
@@ -167,6 +169,49 @@ class CommentControllerTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void getSubcommentsSlice_shouldReturnSlice() throws Exception {
+        SliceCommentDto sliceCommentDto = SliceCommentDto.builder()
+                .content(List.of())
+                .size(10)
+                .hasNext(false)
+                .build();
+        when(commentService.getSubcommentsSlice(postId, commentId, null, 10)).thenReturn(sliceCommentDto);
+
+        mockMvc.perform(get("/api/v1/post/{id}/comment/{commentId}/subcomment/slice", postId, commentId)
+                        .param("size", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hasNext").value(false));
+
+        verify(commentService, times(1)).getSubcommentsSlice(postId, commentId, null, 10);
+    }
+
+    @Test
+    void getThread_shouldReturnDescendants() throws Exception {
+        CommentDto reply = CommentDto.builder().id(UUID.randomUUID()).parentId(commentId).commentText("Reply").build();
+        when(commentService.getThread(postId, commentId, 50)).thenReturn(List.of(reply));
+
+        mockMvc.perform(get("/api/v1/post/{id}/comment/{commentId}/thread", postId, commentId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].commentText").value("Reply"));
+
+        verify(commentService, times(1)).getThread(postId, commentId, 50);
+    }
+
+    @Test
+    void getTopReplies_shouldGroupRepliesByComment() throws Exception {
+        CommentDto reply = CommentDto.builder().id(UUID.randomUUID()).parentId(commentId).commentText("Reply").build();
+        when(commentService.getTopReplies(postId, List.of(commentId), 2)).thenReturn(Map.of(commentId, List.of(reply)));
+
+        mockMvc.perform(get("/api/v1/post/{id}/comment/top-replies", postId)
+                        .param("commentIds", commentId.toString())
+                        .param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['" + commentId + "'][0].commentText").value("Reply"));
+
+        verify(commentService, times(1)).getTopReplies(postId, List.of(commentId), 2);
+    }
+
     @Test
     void create_shouldFailWhenCommentTextIsBlank() throws Exception {
         CommentDto invalidCommentDto = CommentDto.builder()
@@ -113,6 +113,28 @@ class PostControllerTest {
     }
 
 
+    @Test
+    void getFeed_shouldReturnSlicePostDto() throws Exception {
+        when(postService.getFeed(any(PostSearchDto.class), eq("abc"), eq(5)))
+                .thenReturn(SlicePostDto.builder()
+                        .content(Collections.singletonList(postDto))
+                        .size(5)
+                        .hasNext(true)
+                        .nextCursor("next")
+                        .build());
+
+        mockMvc.perform(get("/api/v1/post/feed")
+                        .param("cursor", "abc")
+                        .param("size", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(postId.toString()))
+                .andExpect(jsonPath("$.hasNext").value(true))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+
+        verify(postService, times(1)).getFeed(any(PostSearchDto.class), eq("abc"), eq(5));
+    }
+
+
     @Test
     void addLikeToPost_ShouldReturnCreated() throws Exception {
         postId = UUID.randomUUID();
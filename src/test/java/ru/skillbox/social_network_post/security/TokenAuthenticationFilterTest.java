@@ -1,11 +1,12 @@
 package ru.skillbox.social_network_post.security;
 
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpHeaders;
@@ -16,12 +17,17 @@ import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import ru.skillbox.social_network_post.client.AuthServiceClient;
 
+import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
+import java.util.Base64;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -33,10 +39,12 @@ class TokenAuthenticationFilterTest {
     @Mock
     private JwtUtil jwtUtil;
 
+    @Mock
+    private TokenValidationCache tokenValidationCache;
+
     @Mock
     private FilterChain filterChain;
 
-    @InjectMocks
     private TokenAuthenticationFilter tokenAuthenticationFilter;
 
     private MockHttpServletRequest request;
@@ -45,6 +53,7 @@ class TokenAuthenticationFilterTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        tokenAuthenticationFilter = createFilter(JwtVerificationMode.REMOTE, new JwtVerificationProperties());
         request = new MockHttpServletRequest();
         response = new MockHttpServletResponse();
     }
@@ -79,10 +88,11 @@ class TokenAuthenticationFilterTest {
         String validToken = "valid_token";
         request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + validToken);
 
+        JwtClaims claims = new JwtClaims("testUser", UUID.randomUUID(), List.of("ROLE_USER"), null);
+
+        when(tokenValidationCache.get(validToken)).thenReturn(Optional.empty());
         when(authServiceClient.validateToken(validToken)).thenReturn(true);
-        when(jwtUtil.extractUsername(validToken)).thenReturn("testUser");
-        when(jwtUtil.extractUserId(validToken)).thenReturn(UUID.randomUUID());
-        when(jwtUtil.extractRoles(validToken)).thenReturn(List.of("ROLE_USER"));
+        when(jwtUtil.parseClaims(validToken)).thenReturn(claims);
 
         tokenAuthenticationFilter.doFilterInternal(request, response, filterChain);
 
@@ -92,5 +102,103 @@ class TokenAuthenticationFilterTest {
         // Ensure that the authentication was set correctly
         assertNotNull(authentication);
         assertEquals("testUser", authentication.getName());
+        assertEquals(validToken, SecurityUtils.getToken());
+        verify(tokenValidationCache).put(validToken, claims);
+    }
+
+    @Test
+    void testDoFilterInternal_WhenTokenCached_ShouldSkipRemoteValidation() throws ServletException, IOException {
+        // Simulate request with token validated earlier
+        String cachedToken = "cached_token";
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + cachedToken);
+
+        when(tokenValidationCache.get(cachedToken))
+                .thenReturn(Optional.of(new JwtClaims("cachedUser", UUID.randomUUID(), List.of(), null)));
+
+        tokenAuthenticationFilter.doFilterInternal(request, response, filterChain);
+
+        // Auth service is not called, user is authenticated from cached claims
+        verifyNoInteractions(authServiceClient);
+        assertEquals("cachedUser", SecurityContextHolder.getContext().getAuthentication().getName());
+        verify(filterChain).doFilter(request, response);
+    }
+
+    @Test
+    void testDoFilterInternal_WhenLocalModeAndSignatureValid_ShouldSkipRemoteValidation() throws ServletException, IOException {
+        tokenAuthenticationFilter = createFilter(JwtVerificationMode.LOCAL, keyProperties("main", SECRET));
+
+        String token = signedToken("main", SECRET);
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+
+        when(jwtUtil.parseClaims(token)).thenReturn(new JwtClaims("localUser", UUID.randomUUID(), List.of(), null));
+
+        tokenAuthenticationFilter.doFilterInternal(request, response, filterChain);
+
+        verifyNoInteractions(authServiceClient);
+        assertEquals("localUser", SecurityContextHolder.getContext().getAuthentication().getName());
+    }
+
+    @Test
+    void testDoFilterInternal_WhenLocalModeAndSignatureInvalid_ShouldReturnUnauthorized() throws ServletException, IOException {
+        tokenAuthenticationFilter = createFilter(JwtVerificationMode.LOCAL, keyProperties("main", SECRET));
+
+        // Токен подписан другим секретом
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + signedToken("main", OTHER_SECRET));
+
+        tokenAuthenticationFilter.doFilterInternal(request, response, filterChain);
+
+        assertEquals(HttpServletResponse.SC_UNAUTHORIZED, response.getStatus());
+        verifyNoInteractions(authServiceClient, filterChain);
+    }
+
+    @Test
+    void testDoFilterInternal_WhenFallbackModeAndKeyUnknown_ShouldValidateRemotely() throws ServletException, IOException {
+        tokenAuthenticationFilter = createFilter(JwtVerificationMode.LOCAL_WITH_REMOTE_FALLBACK, keyProperties("main", SECRET));
+
+        String token = signedToken("rotated", OTHER_SECRET);
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+
+        when(authServiceClient.validateToken(token)).thenReturn(true);
+        when(jwtUtil.parseClaims(token)).thenReturn(new JwtClaims("remoteUser", UUID.randomUUID(), List.of(), null));
+
+        tokenAuthenticationFilter.doFilterInternal(request, response, filterChain);
+
+        verify(authServiceClient).validateToken(token);
+        verify(filterChain).doFilter(request, response);
+    }
+
+    @Test
+    void testLocalJwtVerifier_WhenLocalModeWithoutKeys_ShouldFailAtStartup() {
+        JwtVerificationProperties properties = new JwtVerificationProperties();
+        properties.setVerification(JwtVerificationMode.LOCAL);
+
+        assertThrows(IllegalStateException.class, () -> new LocalJwtVerifier(properties));
+    }
+
+    private static final String SECRET = Base64.getEncoder().encodeToString("local-verification-secret-0123456789".getBytes());
+    private static final String OTHER_SECRET = Base64.getEncoder().encodeToString("another-verification-secret-987654321".getBytes());
+
+    private TokenAuthenticationFilter createFilter(JwtVerificationMode mode, JwtVerificationProperties properties) {
+        return new TokenAuthenticationFilter(authServiceClient, jwtUtil, tokenValidationCache,
+                new LocalJwtVerifier(properties), mode);
+    }
+
+    private static JwtVerificationProperties keyProperties(String kid, String secret) {
+        JwtVerificationProperties.KeyProperties key = new JwtVerificationProperties.KeyProperties();
+        key.setKid(kid);
+        key.setSecret(secret);
+
+        JwtVerificationProperties properties = new JwtVerificationProperties();
+        properties.setKeys(List.of(key));
+        return properties;
+    }
+
+    private static String signedToken(String kid, String secret) {
+        return Jwts.builder()
+                .setHeaderParam("kid", kid)
+                .setSubject("user")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(SignatureAlgorithm.HS256, new SecretKeySpec(Base64.getDecoder().decode(secret), "HmacSHA256"))
+                .compact();
     }
-}
\ No newline at end of file
+}
@@ -1,13 +1,13 @@
 package ru.skillbox.social_network_post.service.impl;
 
 import org.apache.kafka.clients.consumer.ConsumerConfig;
-import org.apache.kafka.common.serialization.LongDeserializer;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -23,9 +23,15 @@ import ru.skillbox.social_network_post.SocialNetworkPostApplication;
 import ru.skillbox.social_network_post.client.AccountServiceClient;
 import ru.skillbox.social_network_post.client.AuthServiceClient;
 import ru.skillbox.social_network_post.client.FriendServiceClient;
+import ru.skillbox.social_network_post.repository.AccountModerationJobRepository;
 import ru.skillbox.social_network_post.repository.CommentRepository;
+import ru.skillbox.social_network_post.repository.JobLockRepository;
+import ru.skillbox.social_network_post.repository.ReactionCounterDeltaRepository;
+import ru.skillbox.social_network_post.repository.OutboxEventRepository;
 import ru.skillbox.social_network_post.repository.PostRepository;
 import ru.skillbox.social_network_post.repository.ReactionRepository;
+import ru.skillbox.social_network_post.service.AccountLookupService;
+import ru.skillbox.social_network_post.service.PostCacheService;
 
 import java.util.Properties;
 import java.util.UUID;
@@ -71,7 +77,7 @@ public abstract class AbstractTest {
         Properties properties = new Properties();
         properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaContainer.getBootstrapServers());
         properties.put(ConsumerConfig.GROUP_ID_CONFIG, "test-group");
-        properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, LongDeserializer.class.getName());
+        properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
         properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
         properties.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest"); // Начало с самого первого сообщения
         return properties;
@@ -104,14 +110,49 @@ public abstract class AbstractTest {
     @Autowired
     protected ReactionRepository reactionRepository;
 
+    @Autowired
+    protected OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    protected AccountModerationJobRepository accountModerationJobRepository;
+
+    @Autowired
+    protected AccountModerationJobService accountModerationJobService;
+
+    @Autowired
+    protected JobLockRepository jobLockRepository;
+
+    @Autowired
+    protected ReactionCounterDeltaRepository reactionCounterDeltaRepository;
+
+    @Autowired
+    protected ReactionCounterBuffer reactionCounterBuffer;
+
+    @Autowired
+    protected PostCacheService postCacheService;
+
+    @Autowired
+    protected AccountLookupService accountLookupService;
+
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
 
     @BeforeEach
     protected void setUp() {
         // Общая логика настройки для всех тестов
         setUpAuthentication();
+        createPartialIndexes();
         clearRepositoryData();
     }
 
+    // Частичные индексы ddl-auto не создает, а upsert реакций без уникального индекса невозможен (db-changelog-12)
+    private void createPartialIndexes() {
+        jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_reaction_post_author_unique " +
+                "ON reactions (post_id, author_id) WHERE comment_id IS NULL");
+    }
+
     private void setUpAuthentication() {
         // Создаем тестовую аутентификацию
         SecurityContext securityContext = SecurityContextHolder.createEmptyContext();
@@ -125,9 +166,16 @@ public abstract class AbstractTest {
 
 
     protected void clearRepositoryData() {
-        // Очистка данных перед каждым тестом
+        // Очистка данных перед каждым тестом, дельты счетчиков предыдущего теста не должны попасть в следующий
+        reactionCounterBuffer.flush();
         postRepository.deleteAll();
         commentRepository.deleteAll();
         reactionRepository.deleteAll();
+        outboxEventRepository.deleteAll();
+        accountModerationJobRepository.deleteAll();
+        jobLockRepository.deleteAll();
+        reactionCounterDeltaRepository.deleteAll();
+        postCacheService.evictAll();
+        accountLookupService.evictAll();
     }
 }
\ No newline at end of file
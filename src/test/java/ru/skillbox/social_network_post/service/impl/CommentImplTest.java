@@ -1,5 +1,6 @@
 package ru.skillbox.social_network_post.service.impl;
 
+import jakarta.validation.ValidationException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,6 +18,8 @@ import ru.skillbox.social_network_post.service.KafkaService;
 
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.junit.Assert.assertThrows;
@@ -122,6 +125,77 @@ class CommentImplTest extends AbstractTest {
     }
 
 
+    @Test
+    void testGetByPostId_TextFilterEscapesWildcards() {
+        Post post = postRepository.save(Post.builder()
+                .title("Test Post")
+                .postText("Some text")
+                .publishDate(LocalDateTime.now(ZoneOffset.UTC))
+                .build());
+
+        for (String text : List.of("Скидка 100% на всё", "Скидка 1000 рублей", "snake_case name", "snakeXcase name")) {
+            commentRepository.save(Comment.builder()
+                    .post(post)
+                    .commentText(text)
+                    .commentType(CommentType.POST)
+                    .isBlocked(false)
+                    .isDeleted(false)
+                    .time(LocalDateTime.now(ZoneOffset.UTC))
+                    .build());
+        }
+
+        // '%' и '_' в запросе ищутся как обычные символы, а не как шаблоны LIKE
+        CommentSearchDto percentSearch = new CommentSearchDto();
+        percentSearch.setCommentText("100%");
+
+        CommentSearchDto underscoreSearch = new CommentSearchDto();
+        underscoreSearch.setCommentText("SNAKE_CASE");
+
+        Pageable pageable = PageRequest.of(0, 10);
+
+        Assertions.assertEquals(List.of("Скидка 100% на всё"), commentService.getByPostId(post.getId(), percentSearch, pageable)
+                .getContent().stream().map(CommentDto::getCommentText).toList());
+        Assertions.assertEquals(List.of("snake_case name"), commentService.getByPostId(post.getId(), underscoreSearch, pageable)
+                .getContent().stream().map(CommentDto::getCommentText).toList());
+    }
+
+
+    @Test
+    void testGetSliceByPostId_PagesByCursor() {
+        // Создаем пост и три комментария с разным временем
+        Post post = postRepository.save(Post.builder()
+                .title("Test Post")
+                .postText("Some text")
+                .publishDate(LocalDateTime.now(ZoneOffset.UTC))
+                .build());
+
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        for (int i = 1; i <= 3; i++) {
+            commentRepository.save(Comment.builder()
+                    .post(post)
+                    .commentText("Comment " + i)
+                    .commentType(CommentType.POST)
+                    .isBlocked(false)
+                    .isDeleted(false)
+                    .time(now.plusSeconds(i))
+                    .build());
+        }
+
+        // Первый срез
+        SliceCommentDto first = commentService.getSliceByPostId(post.getId(), new CommentSearchDto(), null, 2);
+
+        Assertions.assertEquals(List.of("Comment 1", "Comment 2"), first.getContent().stream().map(CommentDto::getCommentText).toList());
+        Assertions.assertTrue(first.getHasNext());
+
+        // Следующий срез по курсору
+        SliceCommentDto second = commentService.getSliceByPostId(post.getId(), new CommentSearchDto(), first.getNextCursor(), 2);
+
+        Assertions.assertEquals(List.of("Comment 3"), second.getContent().stream().map(CommentDto::getCommentText).toList());
+        Assertions.assertFalse(second.getHasNext());
+        Assertions.assertNull(second.getNextCursor());
+    }
+
+
     @Test
     void testGetSubcomments() {
         // Arrange: Создаем пост
@@ -307,4 +381,172 @@ class CommentImplTest extends AbstractTest {
         Post updatedPost = postRepository.findById(post.getId()).orElseThrow();
         Assertions.assertEquals(0, updatedPost.getCommentsCount(), "Счётчик комментариев должен уменьшиться");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testDeleteComment_ShouldDeleteWholeThread() {
+        // Arrange: пост с веткой комментарий -> ответ -> ответ на ответ и отдельным комментарием
+        Post post = postRepository.save(Post.builder()
+                .title("Thread Post")
+                .postText("Post with deep thread")
+                .publishDate(LocalDateTime.now(ZoneOffset.UTC))
+                .build());
+
+        doNothing().when(kafkaService).newCommentEvent(any());
+
+        Comment root = createComment(post.getId(), "Root", null);
+        Comment reply = createComment(post.getId(), "Reply", root.getId());
+        Comment nestedReply = createComment(post.getId(), "Nested reply", reply.getId());
+        Comment other = createComment(post.getId(), "Other", null);
+
+        // Act
+        commentService.delete(post.getId(), root.getId());
+
+        // Assert: удалена вся ветка любой глубины, остальные комментарии не затронуты
+        Assertions.assertTrue(commentRepository.findById(root.getId()).orElseThrow().getIsDeleted());
+        Assertions.assertTrue(commentRepository.findById(reply.getId()).orElseThrow().getIsDeleted());
+        Assertions.assertTrue(commentRepository.findById(nestedReply.getId()).orElseThrow().getIsDeleted());
+        Assertions.assertFalse(commentRepository.findById(other.getId()).orElseThrow().getIsDeleted());
+
+        Post updatedPost = postRepository.findById(post.getId()).orElseThrow();
+        Assertions.assertEquals(1, updatedPost.getCommentsCount(), "Счётчик должен уменьшиться на размер ветки");
+    }
+
+    @Test
+    void testGetThread_ShouldReturnDescendantsByPath() {
+        // Arrange
+        Post post = postRepository.save(Post.builder()
+                .title("Thread Post")
+                .postText("Post with deep thread")
+                .publishDate(LocalDateTime.now(ZoneOffset.UTC))
+                .build());
+
+        doNothing().when(kafkaService).newCommentEvent(any());
+
+        Comment root = createComment(post.getId(), "Root", null);
+        Comment reply = createComment(post.getId(), "Reply", root.getId());
+        Comment nestedReply = createComment(post.getId(), "Nested reply", reply.getId());
+        createComment(post.getId(), "Other", null);
+
+        // Act
+        List<CommentDto> thread = commentService.getThread(post.getId(), root.getId(), 10);
+        Map<UUID, List<CommentDto>> topReplies = commentService.getTopReplies(post.getId(), List.of(root.getId(), reply.getId()), 1);
+
+        // Assert: путь и глубина проставлены при создании, поддерево отдается по уровням
+        Assertions.assertEquals(2, nestedReply.getDepth());
+        Assertions.assertEquals(List.of(reply.getId(), nestedReply.getId()), thread.stream().map(CommentDto::getId).toList());
+        Assertions.assertEquals(reply.getId(), topReplies.get(root.getId()).get(0).getId());
+        Assertions.assertEquals(nestedReply.getId(), topReplies.get(reply.getId()).get(0).getId());
+    }
+
+    @Test
+    void testUpdateComment_MoveParent_ShouldMoveSubtreePaths() {
+        // Arrange: ветка Root -> Reply -> Nested reply
+        Post post = postRepository.save(Post.builder()
+                .title("Thread Post")
+                .postText("Post with deep thread")
+                .publishDate(LocalDateTime.now(ZoneOffset.UTC))
+                .build());
+
+        doNothing().when(kafkaService).newCommentEvent(any());
+
+        Comment root = createComment(post.getId(), "Root", null);
+        Comment reply = createComment(post.getId(), "Reply", root.getId());
+        Comment nestedReply = createComment(post.getId(), "Nested reply", reply.getId());
+
+        // Act: ответ становится комментарием верхнего уровня вместе со своим поддеревом
+        commentService.update(post.getId(), reply.getId(), moveDto(reply, null));
+
+        // Assert
+        Comment movedReply = commentRepository.findById(reply.getId()).orElseThrow();
+        Comment movedNested = commentRepository.findById(nestedReply.getId()).orElseThrow();
+
+        Assertions.assertEquals(Comment.ROOT_PATH, movedReply.getThreadPath());
+        Assertions.assertEquals(0, movedReply.getDepth());
+        Assertions.assertEquals(Comment.ROOT_PATH + reply.getId() + "/", movedNested.getThreadPath());
+        Assertions.assertEquals(1, movedNested.getDepth());
+        Assertions.assertEquals(List.of(nestedReply.getId()),
+                commentService.getThread(post.getId(), reply.getId(), 10).stream().map(CommentDto::getId).toList());
+        Assertions.assertTrue(commentService.getThread(post.getId(), root.getId(), 10).isEmpty());
+    }
+
+    @Test
+    void testCreateComment_BeyondMaxDepth_ShouldThrow() {
+        // Arrange: ветка максимальной глубины
+        Post post = postRepository.save(Post.builder()
+                .title("Thread Post")
+                .postText("Post with deep thread")
+                .publishDate(LocalDateTime.now(ZoneOffset.UTC))
+                .build());
+
+        doNothing().when(kafkaService).newCommentEvent(any());
+
+        Comment deepest = createComment(post.getId(), "Root", null);
+        for (int depth = 1; depth <= Comment.MAX_DEPTH; depth++) {
+            deepest = createComment(post.getId(), "Reply " + depth, deepest.getId());
+        }
+
+        UUID postId = post.getId();
+        CommentDto tooDeep = new CommentDto();
+        tooDeep.setCommentText("Too deep");
+        tooDeep.setParentId(deepest.getId());
+
+        // Act + Assert
+        Assertions.assertEquals(Comment.MAX_DEPTH, deepest.getDepth());
+        assertThrows(ValidationException.class, () -> commentService.create(postId, tooDeep));
+    }
+
+    @Test
+    void testUpdateComment_MoveUnderOwnReply_ShouldThrow() {
+        // Arrange
+        Post post = postRepository.save(Post.builder()
+                .title("Thread Post")
+                .postText("Post with deep thread")
+                .publishDate(LocalDateTime.now(ZoneOffset.UTC))
+                .build());
+
+        doNothing().when(kafkaService).newCommentEvent(any());
+
+        Comment root = createComment(post.getId(), "Root", null);
+        Comment reply = createComment(post.getId(), "Reply", root.getId());
+        Comment nestedReply = createComment(post.getId(), "Nested reply", reply.getId());
+
+        UUID postId = post.getId();
+        UUID rootId = root.getId();
+        CommentDto underNestedReply = moveDto(root, nestedReply.getId());
+        CommentDto underItself = moveDto(root, rootId);
+
+        // Act + Assert: пути ветки не изменились
+        assertThrows(ValidationException.class, () -> commentService.update(postId, rootId, underNestedReply));
+        assertThrows(ValidationException.class, () -> commentService.update(postId, rootId, underItself));
+
+        Assertions.assertEquals(nestedReply.getThreadPath(),
+                commentRepository.findById(nestedReply.getId()).orElseThrow().getThreadPath());
+        Assertions.assertEquals(Comment.ROOT_PATH, commentRepository.findById(rootId).orElseThrow().getThreadPath());
+    }
+
+    private static CommentDto moveDto(Comment comment, UUID newParentId) {
+        CommentDto commentDto = new CommentDto();
+        commentDto.setId(comment.getId());
+        commentDto.setAuthorId(comment.getAuthorId());
+        commentDto.setCommentType(comment.getCommentType());
+        commentDto.setCommentText(comment.getCommentText());
+        commentDto.setIsBlocked(comment.getIsBlocked());
+        commentDto.setIsDeleted(comment.getIsDeleted());
+        commentDto.setLikeAmount(comment.getLikeAmount());
+        commentDto.setCommentsCount(comment.getCommentsCount());
+        commentDto.setParentId(newParentId);
+        return commentDto;
+    }
+
+    private Comment createComment(UUID postId, String text, UUID parentId) {
+        CommentDto commentDto = new CommentDto();
+        commentDto.setCommentText(text);
+        commentDto.setParentId(parentId);
+        commentService.create(postId, commentDto);
+
+        return commentRepository.findAll().stream()
+                .filter(comment -> text.equals(comment.getCommentText()))
+                .findFirst()
+                .orElseThrow();
+    }
+}
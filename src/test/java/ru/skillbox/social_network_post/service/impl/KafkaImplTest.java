@@ -8,20 +8,30 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.testcontainers.junit.jupiter.Testcontainers;
 import ru.skillbox.social_network_post.dto.CommentNotificationDto;
 import ru.skillbox.social_network_post.dto.PostNotificationDto;
 import ru.skillbox.social_network_post.dto.ReactionNotificationDto;
+import ru.skillbox.social_network_post.entity.OutboxEvent;
+import ru.skillbox.social_network_post.entity.OutboxEventType;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 @Testcontainers
@@ -32,6 +42,9 @@ class KafkaImplTest extends AbstractTest {
 
     ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());// Для десериализации JSON
 
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @MockBean  // Используйте @MockBean для mock-объекта postService
     private PostServiceImpl postService;  // Теперь это мок-объект
 
@@ -58,12 +71,15 @@ class KafkaImplTest extends AbstractTest {
         kafkaService.newPostEvent(postNotificationDto);
 
         // Assert: Проверка с использованием KafkaConsumer
-        try (KafkaConsumer<Long, String> consumer = new KafkaConsumer<>(consumerProps())) {
+        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(consumerProps())) {
             consumer.subscribe(Collections.singletonList("post.new-post")); // Подписка на топик
-            ConsumerRecords<Long, String> records = consumer.poll(Duration.ofSeconds(5)); // Ждем сообщений
+            ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(5)); // Ждем сообщений
 
             assertFalse(records.isEmpty(), "Kafka message should be received");
 
+            // Ключ сообщения — id поста
+            assertEquals(postNotificationDto.getPostId().toString(), records.iterator().next().key());
+
             // Десериализация полученного сообщения в объект PostNotificationDto
             String jsonMessage = records.iterator().next().value();
             PostNotificationDto actualPostNotificationDto = objectMapper.readValue(jsonMessage, PostNotificationDto.class);
@@ -90,9 +106,9 @@ class KafkaImplTest extends AbstractTest {
         kafkaService.newCommentEvent(commentNotificationDto);
 
         // Assert: Проверяем, что KafkaTemplate был вызван
-        try (KafkaConsumer<Long, String> consumer = new KafkaConsumer<>(consumerProps())) {
+        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(consumerProps())) {
             consumer.subscribe(Collections.singletonList("post.new-comment"));
-            ConsumerRecords<Long, String> records = consumer.poll(Duration.ofSeconds(5));
+            ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(5));
 
             assertFalse(records.isEmpty(), "Kafka message should be received");
 
@@ -122,9 +138,9 @@ class KafkaImplTest extends AbstractTest {
         kafkaService.newLikeEvent(reactionNotificationDto);
 
         // Assert: Проверяем, что KafkaTemplate был вызван
-        try (KafkaConsumer<Long, String> consumer = new KafkaConsumer<>(consumerProps())) {
+        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(consumerProps())) {
             consumer.subscribe(Collections.singletonList("post.new-like"));
-            ConsumerRecords<Long, String> records = consumer.poll(Duration.ofSeconds(5));
+            ConsumerRecords<String, String> records = consumer.poll(Duration.ofSeconds(5));
 
             assertFalse(records.isEmpty(), "Kafka message should be received");
 
@@ -140,27 +156,124 @@ class KafkaImplTest extends AbstractTest {
         }
     }
 
+    @Test
+    void testNewPostEvent_WhenTransactionRolledBack_ShouldNotBeQueued() {
+        // Arrange
+        PostNotificationDto postNotificationDto = PostNotificationDto.builder()
+                .authorId(UUID.randomUUID())
+                .postId(UUID.randomUUID())
+                .title("Rolled back post")
+                .publishDate(LocalDateTime.now(ZoneOffset.UTC))
+                .build();
+
+        // Act: событие пишется в outbox в рамках транзакции, которая откатывается
+        transactionTemplate.executeWithoutResult(status -> {
+            kafkaService.newPostEvent(postNotificationDto);
+            status.setRollbackOnly();
+        });
+
+        // Assert
+        assertEquals(0, outboxEventRepository.count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRelay_WhenEventFails_KeepsItAndLaterEventsOfSamePost() throws Exception {
+        // Arrange: outbox забирает тестовый экземпляр relay, фоновый запуск его пропустит
+        JobLockService testLockService = new JobLockService(jobLockRepository);
+        assertTrue(testLockService.tryLock("outbox-relay", Duration.ofMinutes(1)));
+
+        UUID firstPostId = UUID.randomUUID();
+        UUID secondPostId = UUID.randomUUID();
+        saveOutboxEvent(firstPostId, "first-1");
+        saveOutboxEvent(firstPostId, "first-2");
+        saveOutboxEvent(secondPostId, "second-1");
+
+        // Первое событие первого поста брокер не принимает
+        KafkaTemplate<String, Object> kafkaTemplate = mock(KafkaTemplate.class);
+        List<String> sentTitles = new ArrayList<>();
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            String title = invocation.<PostNotificationDto>getArgument(2).getTitle();
+            sentTitles.add(title);
+            return "first-1".equals(title)
+                    ? CompletableFuture.failedFuture(new IllegalStateException("Broker is not available"))
+                    : CompletableFuture.completedFuture(null);
+        });
+
+        OutboxRelayService relayService = new OutboxRelayService(outboxEventRepository, kafkaTemplate, objectMapper,
+                testLockService, 200, Duration.ofSeconds(1), Duration.ofMillis(100), Duration.ofMillis(300),
+                Duration.ofMinutes(1));
+
+        // Act
+        relayService.relay();
+
+        // Assert: второе событие первого поста не отправлялось, в outbox остались оба события первого поста
+        assertEquals(List.of("first-1", "second-1"), sentTitles);
+
+        List<String> pendingTitles = new ArrayList<>();
+        for (OutboxEvent event : outboxEventRepository.findNextBatch(10)) {
+            pendingTitles.add(objectMapper.readValue(event.getPayload(), PostNotificationDto.class).getTitle());
+        }
+        assertEquals(List.of("first-1", "first-2"), pendingTitles);
+    }
+
+    private void saveOutboxEvent(UUID postId, String title) throws Exception {
+        PostNotificationDto payload = PostNotificationDto.builder()
+                .postId(postId)
+                .authorId(UUID.randomUUID())
+                .title(title)
+                .build();
+
+        outboxEventRepository.save(OutboxEvent.builder()
+                .topic("post.new-post")
+                .eventType(OutboxEventType.NEW_POST)
+                .aggregateId(postId)
+                .payload(objectMapper.writeValueAsString(payload))
+                .createdAt(LocalDateTime.now(ZoneOffset.UTC))
+                .build());
+    }
+
     @Test
     void testListenBlockedAccount() {
         // Arrange
-        String message = "{\"accountId\":\"" + UUID.randomUUID() + "\"}";
+        UUID accountId = UUID.randomUUID();
+        String message = "{\"accountId\":\"" + accountId + "\"}";
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
 
-        // Act: Симулируем обработку сообщения
-        kafkaService.listenBlockedAccount(message);
+        // Act: Симулируем обработку пачки сообщений (дубликат и нечитаемое сообщение схлопываются)
+        kafkaService.listenBlockedAccount(List.of(message, message, "not a json"), acknowledgment);
 
-        // Assert: Проверяем, что сервис обновил статус блокировки
-        verify(postService, times(1)).updateBlockedStatusForAccount(any(UUID.class));
+        // Assert: Проверяем, что сервис обновил статус блокировки одним вызовом и оффсеты подтверждены
+        verify(postService, times(1)).updateBlockedStatusForAccounts(Set.of(accountId));
+        verify(acknowledgment, times(1)).acknowledge();
     }
 
     @Test
     void testListenDeletedAccount() {
         // Arrange
-        String message = "{\"accountId\":\"" + UUID.randomUUID() + "\"}";
+        UUID firstAccountId = UUID.randomUUID();
+        UUID secondAccountId = UUID.randomUUID();
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+
+        // Act: Симулируем обработку пачки сообщений
+        kafkaService.listenDeletedAccount(List.of(
+                "{\"accountId\":\"" + firstAccountId + "\"}",
+                "{\"accountId\":\"" + secondAccountId + "\"}"), acknowledgment);
+
+        // Assert: Проверяем, что сервис обновил статус удаления для всех аккаунтов пачки
+        verify(postService, times(1)).updateDeletedStatusForAccounts(Set.of(firstAccountId, secondAccountId));
+        verify(acknowledgment, times(1)).acknowledge();
+    }
+
+    @Test
+    void testRetryBlockedAccount() {
+        // Arrange
+        UUID accountId = UUID.randomUUID();
 
-        // Act: Симулируем обработку сообщения
-        kafkaService.listenDeletedAccount(message);
+        // Act: Симулируем повторную обработку записи из retry-топика
+        kafkaService.retryBlockedAccount("{\"accountId\":\"" + accountId + "\"}");
 
-        // Assert: Проверяем, что сервис обновил статус удаления
-        verify(postService, times(1)).updateDeletedStatusForAccount(any(UUID.class));
+        // Assert
+        verify(postService, times(1)).updateBlockedStatusForAccounts(Set.of(accountId));
     }
 }
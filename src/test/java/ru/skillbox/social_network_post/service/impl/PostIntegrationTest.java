@@ -4,14 +4,22 @@ import feign.FeignException;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.*;
 import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import ru.skillbox.social_network_post.dto.*;
+import ru.skillbox.social_network_post.entity.Comment;
+import ru.skillbox.social_network_post.entity.CommentType;
+import ru.skillbox.social_network_post.entity.ModerationStage;
 import ru.skillbox.social_network_post.entity.Post;
+import ru.skillbox.social_network_post.entity.PostReactionCount;
+import ru.skillbox.social_network_post.entity.Reaction;
 import ru.skillbox.social_network_post.exception.CustomFreignException;
 import ru.skillbox.social_network_post.exception.EntityNotFoundException;
+import ru.skillbox.social_network_post.repository.PostReactionCountRepository;
 import ru.skillbox.social_network_post.service.KafkaService;
 
 import java.time.LocalDateTime;
@@ -31,6 +39,9 @@ class PostIntegrationTest extends AbstractTest {
     @MockBean
     protected KafkaService kafkaService;
 
+    @Autowired
+    private PostReactionCountRepository postReactionCountRepository;
+
     @Override
     @BeforeEach
     protected void setUp() {
@@ -101,6 +112,106 @@ class PostIntegrationTest extends AbstractTest {
 
     }
 
+    @Test
+    void testGetAll_ByTags_ReturnsPostOnceWithAllTags() {
+
+        // Arrange: пост подходит под оба тега фильтра
+        Post post = new Post();
+        post.setTitle("Tagged Post");
+        post.setPostText("Test Content");
+        post.setAuthorId(UUID.randomUUID());
+        post.setPublishDate(LocalDateTime.now(ZoneOffset.UTC));
+        post.setTags(List.of("java", "spring", "kafka"));
+
+        postRepository.save(post);
+
+        PostSearchDto searchDto = new PostSearchDto();
+        searchDto.setTags(List.of("java", "spring"));
+
+        // Act
+        PagePostDto result = postService.getAll(searchDto, PageRequest.of(0, 10));
+
+        // Assert: без дублей и со всеми тегами поста
+        assertEquals(1, result.getTotalElements());
+        assertEquals(1, result.getContent().size());
+        assertEquals(List.of("java", "kafka", "spring"),
+                result.getContent().get(0).getTags().stream().map(TagDto::name).sorted().toList());
+    }
+
+    @Test
+    void testGetAll_ByFullTextQuery_OrdersByRank() {
+
+        // Arrange: слово запроса в тексте одного поста и в заголовке другого
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+
+        Post inText = new Post();
+        inText.setTitle("Заметки");
+        inText.setPostText("Сегодня настраивали индексы в базе данных");
+        inText.setAuthorId(UUID.randomUUID());
+        inText.setPublishDate(now);
+        postRepository.save(inText);
+
+        Post inTitle = new Post();
+        inTitle.setTitle("Индексы PostgreSQL");
+        inTitle.setPostText("Коротко о том, как устроен GIN");
+        inTitle.setAuthorId(UUID.randomUUID());
+        inTitle.setPublishDate(now);
+        postRepository.save(inTitle);
+
+        Post other = new Post();
+        other.setTitle("Kafka");
+        other.setPostText("Retry topics and dead letters");
+        other.setAuthorId(UUID.randomUUID());
+        other.setPublishDate(now);
+        postRepository.save(other);
+
+        PostSearchDto searchDto = new PostSearchDto();
+        searchDto.setQuery("индекс");
+
+        // Act
+        PagePostDto result = postService.getAll(searchDto, PageRequest.of(0, 10, Sort.by("id")));
+
+        // Assert: совпадение в заголовке (вес A) выше совпадения в тексте (вес B)
+        assertEquals(List.of(inTitle.getId(), inText.getId()), result.getContent().stream().map(PostDto::getId).toList());
+        assertEquals(2, result.getTotalElements());
+    }
+
+    @Test
+    void testGetFeed_PagesByCursor() {
+        // Arrange: три поста с разной датой публикации
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        for (int i = 1; i <= 3; i++) {
+            Post post = new Post();
+            post.setTitle("Feed Post " + i);
+            post.setPostText("Test Content");
+            post.setAuthorId(UUID.randomUUID());
+            post.setPublishDate(now.minusMinutes(i));
+            postRepository.save(post);
+        }
+
+        // Act: первая страница
+        SlicePostDto first = postService.getFeed(new PostSearchDto(), null, 2);
+
+        // Assert: самые свежие посты и курсор на продолжение
+        assertEquals(List.of("Feed Post 1", "Feed Post 2"), first.getContent().stream().map(PostDto::getTitle).toList());
+        assertTrue(first.getHasNext());
+        assertNotNull(first.getNextCursor());
+
+        // Act: вторая страница по курсору
+        SlicePostDto second = postService.getFeed(new PostSearchDto(), first.getNextCursor(), 2);
+
+        // Assert
+        assertEquals(List.of("Feed Post 3"), second.getContent().stream().map(PostDto::getTitle).toList());
+        assertFalse(second.getHasNext());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void testGetFeed_InvalidCursor() {
+        PostSearchDto searchDto = new PostSearchDto();
+        assertThrows(IllegalStateException.class, () -> postService.getFeed(searchDto, "not-a-cursor", 10));
+    }
+
     @Test
     void getAll_WithAuthorAndFriendsFilters_ReturnsFilteredPosts() {
         // Сохраняем пост в БД
@@ -208,6 +319,34 @@ class PostIntegrationTest extends AbstractTest {
         assertEquals("Updated Content", updatedPost.getPostText(), "Content should be updated");
     }
 
+    @Test
+    void testGetById_CachedUntilUpdate() {
+        // Arrange: пост попадает в кэш при первом чтении
+        Post post = new Post();
+        post.setTitle("Original Title");
+        post.setPostText("Original Content");
+        post.setAuthorId(UUID.randomUUID());
+        post.setPublishDate(LocalDateTime.now(ZoneOffset.UTC));
+
+        Post savedPost = postRepository.save(post);
+        postService.getById(savedPost.getId());
+
+        // Изменение в обход сервиса кэш не сбрасывает
+        savedPost.setTitle("Changed In Db");
+        postRepository.save(savedPost);
+        assertEquals("Original Title", postService.getById(savedPost.getId()).getTitle());
+
+        // Act: обновление через сервис инвалидирует запись
+        PostDto updatedDto = new PostDto();
+        updatedDto.setId(savedPost.getId());
+        updatedDto.setTitle("Updated Title");
+        updatedDto.setPostText("Updated Content");
+        postService.update(updatedDto);
+
+        // Assert
+        assertEquals("Updated Title", postService.getById(savedPost.getId()).getTitle());
+    }
+
     @Test
     void testUpdate_PostNotFound() {
         // Arrange
@@ -336,6 +475,110 @@ class PostIntegrationTest extends AbstractTest {
         });
     }
 
+    @Test
+    void testUpdateBlockedStatusForAccounts_ShouldKeepReactionsButDiscountThem() {
+        // Arrange: пост и комментарий другого автора с реакциями блокируемого аккаунта
+        UUID blockedAccountId = UUID.randomUUID();
+
+        Post post = new Post();
+        post.setTitle("Reacted post");
+        post.setPostText("Reacted post text");
+        post.setAuthorId(UUID.randomUUID());
+        post.setPublishDate(LocalDateTime.now(ZoneOffset.UTC));
+        post.setReactionsCount(1L);
+        postRepository.save(post);
+        postReactionCountRepository.save(new PostReactionCount(post.getId(), "heart", 1L));
+
+        Comment comment = commentRepository.save(Comment.builder()
+                .post(post)
+                .authorId(blockedAccountId)
+                .commentText("Comment of blocked account")
+                .commentType(CommentType.POST)
+                .time(LocalDateTime.now(ZoneOffset.UTC))
+                .likeAmount(1)
+                .commentsCount(0)
+                .isBlocked(false)
+                .isDeleted(false)
+                .build());
+
+        reactionRepository.save(Reaction.builder()
+                .post(post)
+                .authorId(blockedAccountId)
+                .type("POST")
+                .reactionType("heart")
+                .build());
+
+        reactionRepository.save(Reaction.builder()
+                .post(post)
+                .commentId(comment.getId())
+                .authorId(blockedAccountId)
+                .type("COMMENT")
+                .reactionType("heart")
+                .build());
+
+        // Act: блокировка
+        postService.updateBlockedStatusForAccounts(List.of(blockedAccountId));
+        accountModerationJobService.processPendingJobs();
+
+        // Assert: реакции сохранены, но не учитываются в счетчиках и гистограмме
+        assertTrue(commentRepository.findById(comment.getId()).orElseThrow().getIsBlocked(), "Comment should be blocked");
+        assertEquals(2, reactionRepository.countByPostId(post.getId()));
+        assertEquals(0, postRepository.getReactionsCount(post.getId()));
+        assertEquals(0, commentRepository.getLikeAmount(comment.getId()));
+        assertTrue(postReactionCountRepository.findByPostId(post.getId()).isEmpty());
+
+        accountModerationJobRepository.findAll()
+                .forEach(job -> assertEquals(ModerationStage.DONE, job.getStage()));
+    }
+
+    @Test
+    void testUpdateDeletedStatusForAccounts_ShouldCascadeInBackgroundJob() {
+        // Arrange: пост другого автора с комментарием и реакцией удаляемого аккаунта
+        UUID deletedAccountId = UUID.randomUUID();
+
+        Post post = new Post();
+        post.setTitle("Reacted post");
+        post.setPostText("Reacted post text");
+        post.setAuthorId(UUID.randomUUID());
+        post.setPublishDate(LocalDateTime.now(ZoneOffset.UTC));
+        post.setReactionsCount(1L);
+        post.setCommentsCount(1L);
+        postRepository.save(post);
+
+        Comment comment = commentRepository.save(Comment.builder()
+                .post(post)
+                .authorId(deletedAccountId)
+                .commentText("Comment of deleted account")
+                .commentType(CommentType.POST)
+                .time(LocalDateTime.now(ZoneOffset.UTC))
+                .likeAmount(0)
+                .commentsCount(0)
+                .isBlocked(false)
+                .isDeleted(false)
+                .build());
+
+        reactionRepository.save(Reaction.builder()
+                .post(post)
+                .authorId(deletedAccountId)
+                .type("POST")
+                .reactionType("heart")
+                .build());
+
+        // Act: сначала ставится задача, затем фоновый обработчик проходит ее чанками
+        postService.updateDeletedStatusForAccounts(List.of(deletedAccountId));
+        accountModerationJobService.processPendingJobs();
+
+        // Assert
+        Post updatedPost = postRepository.findById(post.getId()).orElseThrow();
+
+        assertTrue(commentRepository.findById(comment.getId()).orElseThrow().getIsDeleted(), "Comment should be deleted");
+        assertEquals(0, reactionRepository.countByPostId(post.getId()));
+        assertEquals(0L, updatedPost.getReactionsCount());
+        assertEquals(0L, updatedPost.getCommentsCount());
+        assertFalse(updatedPost.getIsDeleted(), "Post of another author should stay");
+        assertEquals(ModerationStage.DONE, accountModerationJobRepository.findAll().get(0).getStage());
+    }
+
     @Test
     void testGetAuthorIds_ShouldThrowCustomFreignException() {
         // Arrange
@@ -358,4 +601,17 @@ class PostIntegrationTest extends AbstractTest {
         // Act & Assert
         assertThrows(CustomFreignException.class, () -> postService.getFriendsIds());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGetFriendsIds_CachedPerAccount() {
+        UUID friendId = UUID.randomUUID();
+        when(friendServiceClient.getFriendsIds()).thenReturn(List.of(friendId));
+
+        // Act: повторный запрос того же пользователя не идет в сеть
+        assertEquals(List.of(friendId), postService.getFriendsIds());
+        assertEquals(List.of(friendId), postService.getFriendsIds());
+
+        // Assert
+        Mockito.verify(friendServiceClient, Mockito.times(1)).getFriendsIds();
+    }
+}
@@ -2,19 +2,37 @@ package ru.skillbox.social_network_post.service.impl;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import ru.skillbox.social_network_post.dto.PostDto;
+import ru.skillbox.social_network_post.dto.PostSearchDto;
 import ru.skillbox.social_network_post.dto.ReactionDto;
 import ru.skillbox.social_network_post.dto.ReactionNotificationDto;
 import ru.skillbox.social_network_post.dto.RequestReactionDto;
 import ru.skillbox.social_network_post.entity.Comment;
 import ru.skillbox.social_network_post.entity.CommentType;
 import ru.skillbox.social_network_post.entity.Post;
+import ru.skillbox.social_network_post.entity.PostReactionCount;
 import ru.skillbox.social_network_post.entity.Reaction;
+import ru.skillbox.social_network_post.repository.PostReactionCountRepository;
 import ru.skillbox.social_network_post.security.SecurityUtils;
 import ru.skillbox.social_network_post.service.KafkaService;
 
 import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -25,6 +43,12 @@ class ReactionImplTest extends AbstractTest {
     @MockBean
     protected KafkaService kafkaService;
 
+    @Autowired
+    private ReactionCountReconciliationService reactionCountReconciliationService;
+
+    @Autowired
+    private PostReactionCountRepository postReactionCountRepository;
+
     @Override
     @BeforeEach
     protected void setUp() {
@@ -43,6 +67,7 @@ class ReactionImplTest extends AbstractTest {
 
         // Act
         ReactionDto result = reactionService.addLikeToPost(post.getId(), requestReactionDto);
+        reactionCounterBuffer.flush();
 
         post = postRepository.findAll().get(0);
 
@@ -69,6 +94,7 @@ class ReactionImplTest extends AbstractTest {
 
         // Act
         ReactionDto result = reactionService.addLikeToPost(post.getId(), requestReactionDto);
+        reactionCounterBuffer.flush();
 
         post = postRepository.findAll().get(0);
 
@@ -83,6 +109,168 @@ class ReactionImplTest extends AbstractTest {
     }
 
 
+    @Test
+    void testAddLikeToPost_Twice_ReplacesReactionWithoutIncrementingCount() {
+        // Arrange
+        Post post = postRepository.save(createTestPost(UUID.randomUUID()));
+
+        // Act: повторная реакция того же пользователя другим типом
+        reactionService.addLikeToPost(post.getId(), createTestRequestReactionDto());
+        ReactionDto result = reactionService.addLikeToPost(post.getId(), new RequestReactionDto("POST", "heart"));
+        reactionCounterBuffer.flush();
+
+        // Assert: одна строка, счетчик не вырос, гистограмма перенесена на новый тип
+        assertEquals(1, reactionRepository.count());
+        assertEquals(1, postRepository.getReactionsCount(post.getId()));
+        assertEquals(1, result.getQuantity());
+        assertEquals("heart", reactionService.getMyReaction(post.getId(), SecurityUtils.getAccountId()));
+
+        Map<String, Long> counts = result.getReactionsInfo().stream()
+                .collect(Collectors.toMap(ReactionDto.ReactionInfo::getReactionType, ReactionDto.ReactionInfo::getCount));
+        assertEquals(0L, counts.get("delight"));
+        assertEquals(1L, counts.get("heart"));
+    }
+
+
+    @Test
+    void testAddAndRemoveLikeToPost_BeforeFlush_UsesPendingCounterOnWrites() {
+        // Arrange
+        Post post = postRepository.save(createTestPost(UUID.randomUUID()));
+
+        // Act: лайк еще в буфере, в базе счетчик 0
+        ReactionDto result = reactionService.addLikeToPost(post.getId(), createTestRequestReactionDto());
+
+        // Assert: ответ автору учитывает несвернутую дельту, чтение видит лайк только после сброса
+        assertEquals(1, result.getQuantity());
+        assertEquals(0L, postService.getById(post.getId()).getLikeAmount());
+
+        // Снятие лайка до сброса не считает счетчик нулевым
+        reactionService.removeLikeFromPost(post.getId());
+        reactionCounterBuffer.flush();
+
+        assertEquals(0, postRepository.getReactionsCount(post.getId()));
+        assertEquals(0L, postService.getById(post.getId()).getLikeAmount());
+        assertEquals(0L, postReactionCountRepository.findByPostId(post.getId()).stream()
+                .mapToLong(PostReactionCount::getCount).sum());
+    }
+
+
+    @Test
+    void testAddLikeToPost_ConcurrentlyWithFlush_CountsEveryLike() throws Exception {
+        // Arrange
+        Post post = postRepository.save(createTestPost(UUID.randomUUID()));
+        int likes = 40;
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean liking = new AtomicBoolean(true);
+
+        try {
+            // Act: разные пользователи ставят лайки, пока дельты параллельно сворачиваются в счетчик
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int i = 0; i < likes; i++) {
+                tasks.add(executor.submit(() -> {
+                    start.await();
+                    SecurityContextHolder.getContext().setAuthentication(
+                            new UsernamePasswordAuthenticationToken(UUID.randomUUID(), null));
+                    reactionService.addLikeToPost(post.getId(), createTestRequestReactionDto());
+                    return null;
+                }));
+            }
+            Future<?> flusher = executor.submit(() -> {
+                start.await();
+                while (liking.get()) {
+                    reactionCounterBuffer.flush();
+                }
+                return null;
+            });
+
+            start.countDown();
+            for (Future<?> task : tasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+            liking.set(false);
+            flusher.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        reactionCounterBuffer.flush();
+
+        // Assert: ни одна дельта не потеряна и не учтена дважды
+        assertEquals(likes, postRepository.getReactionsCount(post.getId()));
+        assertEquals(likes, postReactionCountRepository.findByPostId(post.getId()).get(0).getCount());
+        assertEquals(0, reactionCounterBuffer.pendingPostDelta(post.getId()));
+    }
+
+
+    @Test
+    void testRebuild_WithPendingDeltas_KeepsHistogramExact() {
+        // Arrange: новая реакция и смена типа другой реакции еще не свернуты в гистограмму
+        Post post = postRepository.save(createTestPost(UUID.randomUUID()));
+        reactionService.addLikeToPost(post.getId(), createTestRequestReactionDto());
+        reactionCounterBuffer.flush();
+
+        reactionService.addLikeToPost(post.getId(), new RequestReactionDto("POST", "heart"));
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(UUID.randomUUID(), null));
+        reactionService.addLikeToPost(post.getId(), createTestRequestReactionDto());
+
+        // Act: пересборка до сворачивания дельт
+        reactionCountReconciliationService.rebuild(List.of(post.getId()));
+        reactionCounterBuffer.flush();
+
+        // Assert: дельты, уже учтенные пересборкой, не применены второй раз
+        Map<String, Long> counts = postReactionCountRepository.findByPostId(post.getId()).stream()
+                .filter(count -> count.getCount() != 0)
+                .collect(Collectors.toMap(PostReactionCount::getReactionType, PostReactionCount::getCount));
+        assertEquals(Map.of("delight", 1L, "heart", 1L), counts);
+        assertEquals(2, postRepository.getReactionsCount(post.getId()));
+    }
+
+
+    @Test
+    void testRebuildAll_WithPendingDeltas_DoesNotDoubleCount() {
+        // Arrange: лайки поста и комментария еще не свернуты в счетчики
+        Post post = postRepository.save(createTestPost(UUID.randomUUID()));
+        Comment comment = commentRepository.save(createTestComment(post, UUID.randomUUID()));
+        reactionService.addLikeToPost(post.getId(), createTestRequestReactionDto());
+        reactionService.addLikeToComment(post.getId(), comment.getId());
+
+        // Act: ночная сверка до сворачивания дельт
+        reactionCountReconciliationService.rebuildAll();
+        reactionCounterBuffer.flush();
+
+        // Assert: сверка учла несвернутые дельты
+        assertEquals(1, postRepository.getReactionsCount(post.getId()));
+        assertEquals(1, commentRepository.getLikeAmount(comment.getId()));
+        assertEquals(1L, postService.getById(post.getId()).getLikeAmount());
+    }
+
+
+    @Test
+    void testGetById_ReturnsReactionOfCurrentUser_WhenOtherUserQueriesConcurrently() throws Exception {
+        // Arrange: текущий пользователь ставит реакцию
+        Post post = postRepository.save(createTestPost(UUID.randomUUID()));
+        reactionService.addLikeToPost(post.getId(), createTestRequestReactionDto());
+
+        // Другой пользователь в своем потоке запрашивает ленту
+        Thread otherUser = new Thread(() -> {
+            SecurityContextHolder.getContext().setAuthentication(
+                    new UsernamePasswordAuthenticationToken(UUID.randomUUID(), null));
+            postService.getAll(new PostSearchDto(), PageRequest.of(0, 10));
+        });
+        otherUser.start();
+        otherUser.join();
+
+        // Act
+        PostDto postDto = postService.getById(post.getId());
+
+        // Assert: реакция определяется по пользователю запроса, а не по последнему вызову сервиса
+        assertEquals("delight", postDto.getMyReaction());
+        assertTrue(postDto.getMyLike());
+    }
+
+
     @Test
     void testDeleteLikeFromPost() {
 
@@ -103,6 +291,7 @@ class ReactionImplTest extends AbstractTest {
 
         // Удаляем лайк
         reactionService.removeLikeFromPost(post.getId());
+        reactionCounterBuffer.flush();
 
         // Проверяем, что реакция удалена
         assertEquals(0, reactionRepository.count());
@@ -111,6 +300,26 @@ class ReactionImplTest extends AbstractTest {
         assertEquals(0, postRepository.getReactionsCount(post.getId()));
     }
 
+    @Test
+    void testDeleteBlockedLikeFromPost_DoesNotChangeCount() {
+        // Arrange: учтен лайк другого пользователя, реакция текущего заблокирована и в счетчике не учтена
+        Post post = createTestPost(UUID.randomUUID());
+        post.setReactionsCount(1L);
+        post = postRepository.save(post);
+
+        Reaction reaction = createTestReaction(post, null, SecurityUtils.getAccountId());
+        reaction.setIsBlocked(true);
+        reactionRepository.save(reaction);
+
+        // Act
+        reactionService.removeLikeFromPost(post.getId());
+        reactionCounterBuffer.flush();
+
+        // Assert
+        assertEquals(0, reactionRepository.count());
+        assertEquals(1, postRepository.getReactionsCount(post.getId()));
+    }
+
     @Test
     void testRemoveLikeFromPost_WhenNoLikes_ThrowsException() {
 
@@ -129,6 +338,27 @@ class ReactionImplTest extends AbstractTest {
         assertThrows(IllegalStateException.class, () -> reactionService.removeLikeFromPost(postId));
     }
 
+    @Test
+    void testGetReactionsForSeveralPosts() {
+        // Arrange: два поста, реакция текущего пользователя только на первом
+        Post first = postRepository.save(createTestPost(UUID.randomUUID()));
+        Post second = postRepository.save(createTestPost(UUID.randomUUID()));
+
+        reactionService.addLikeToPost(first.getId(), createTestRequestReactionDto());
+
+        List<UUID> postIds = List.of(first.getId(), second.getId());
+
+        // Act
+        Map<UUID, List<ReactionDto.ReactionInfo>> reactionInfos = reactionService.getReactionInfos(postIds);
+        Map<UUID, String> myReactions = reactionService.getMyReactions(postIds, SecurityUtils.getAccountId());
+
+        // Assert
+        assertEquals(1L, reactionInfos.get(first.getId()).get(0).getCount());
+        assertEquals(0L, reactionInfos.get(second.getId()).get(0).getCount());
+        assertEquals("delight", myReactions.get(first.getId()));
+        assertFalse(myReactions.containsKey(second.getId()));
+    }
+
     @Test
     void testAddLikeToComment() {
         // Arrange: Создаем тестовый пост
@@ -194,6 +424,7 @@ class ReactionImplTest extends AbstractTest {
 
         // Act
         reactionService.removeLikeFromComment(post.getId(), comment.getId());
+        reactionCounterBuffer.flush();
 
         // Assert
         assertEquals(0, reactionRepository.count());
@@ -217,6 +448,42 @@ class ReactionImplTest extends AbstractTest {
         assertThrows(IllegalStateException.class, () -> reactionService.removeLikeFromComment(postId, commentId));
     }
 
+    @Test
+    void testRebuildAll_FixesDriftedAndStaleCounts() {
+        // Arrange: гистограмма разошлась с реакциями — неверный счетчик и тип без реакций
+        Post post = postRepository.save(createTestPost(UUID.randomUUID()));
+        reactionService.addLikeToPost(post.getId(), createTestRequestReactionDto());
+
+        postReactionCountRepository.save(new PostReactionCount(post.getId(), "delight", 42L));
+        postReactionCountRepository.save(new PostReactionCount(post.getId(), "heart", 3L));
+
+        // Act
+        reactionCountReconciliationService.rebuildAll();
+
+        // Assert
+        Map<String, Long> counts = postReactionCountRepository.findByPostId(post.getId()).stream()
+                .collect(Collectors.toMap(PostReactionCount::getReactionType, PostReactionCount::getCount));
+        assertEquals(Map.of("delight", 1L), counts);
+    }
+
+
+    @Test
+    void testRebuildAll_WhenLockedByAnotherInstance_Skips() {
+        // Arrange: пересборку в это время выполняет другой экземпляр
+        Post post = postRepository.save(createTestPost(UUID.randomUUID()));
+        reactionService.addLikeToPost(post.getId(), createTestRequestReactionDto());
+        postReactionCountRepository.save(new PostReactionCount(post.getId(), "delight", 42L));
+
+        jdbcTemplate.update("INSERT INTO job_locks (name, locked_until, locked_at, locked_by) " +
+                "VALUES ('reaction-counts-rebuild', now() + interval '1 hour', now(), 'other-instance')");
+
+        // Act
+        reactionCountReconciliationService.rebuildAll();
+
+        // Assert: счетчик не тронут
+        assertEquals(42L, postReactionCountRepository.findByPostId(post.getId()).get(0).getCount());
+    }
+
     private static Post createTestPost(UUID authorId) {
         Post post = new Post();
         post.setTitle("Test Post");
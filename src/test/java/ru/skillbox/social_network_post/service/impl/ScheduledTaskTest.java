@@ -9,6 +9,7 @@ import ru.skillbox.social_network_post.dto.*;
 import ru.skillbox.social_network_post.exception.CustomFreignException;
 import ru.skillbox.social_network_post.security.SecurityUtils;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
@@ -166,10 +167,16 @@ class ScheduledTaskTest extends AbstractTest {
                         .build()))
                 .build();
 
-        SecurityUtils.saveToken("084de31a-cbfc-423a-b41b-b5c08199c110");
+        TokenResponse tokenResponse = new TokenResponse();
+        tokenResponse.setAccessToken("084de31a-cbfc-423a-b41b-b5c08199c110");
 
         when(accountServiceClient.getAllAccounts()).thenReturn(pageAccountDto);
         when(authServiceClient.validateToken(anyString())).thenReturn(true);
+        when(authServiceClient.login(any(AuthenticateRq.class))).thenReturn(tokenResponse);
+
+        // Токен, видимый сервисам внутри задачи
+        List<String> tokens = new ArrayList<>();
+        doAnswer(invocation -> tokens.add(SecurityUtils.getToken())).when(postService).create(any(PostDto.class));
 
 
         // Act
@@ -177,5 +184,7 @@ class ScheduledTaskTest extends AbstractTest {
 
         // Assert
         verify(postService, atLeastOnce()).create(any(PostDto.class));
+        assertEquals(List.of("084de31a-cbfc-423a-b41b-b5c08199c110"), tokens);
+        assertNull(SecurityUtils.getToken(), "Security context should be cleared after the task");
     }
 }
\ No newline at end of file